@@ -0,0 +1,131 @@
+package org.nibiru.gen.api.i18n;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The messages without arguments of one locale of a {@link Messages} interface whose storage is
+ * {@link Messages.Storage#TABLE}, used by the generated {@code FooStrings} class.
+ * <p>
+ * The table resource holds the distinct texts of all the locales once, and the ids of the texts of
+ * each locale. Only the texts of the loaded locale are copied out of it, so the memory kept grows with
+ * the size of that locale, not with the number of locales. Each text is decoded on first use.
+ * <p>
+ * The resource is made of big-endian ints: the number of texts, the offset of each text in the UTF-8
+ * data followed by the offset of its end, the number of locales, and for each locale the number of its
+ * messages followed by the id of the text of each one. The UTF-8 data comes last.
+ */
+public final class LocaleStrings {
+    private final byte[] data;
+    private final int[] starts;
+    private final int[] ends;
+    private final String[] strings;
+
+    private LocaleStrings(byte[] data, int[] starts, int[] ends) {
+        this.data = data;
+        this.starts = starts;
+        this.ends = ends;
+        this.strings = new String[starts.length];
+    }
+
+    /**
+     * Reads the texts of a locale from a table resource.
+     *
+     * @param owner        The class the resource is next to
+     * @param resourceName The name of the resource, relative to the owner
+     * @param locale       The index of the locale in the table
+     */
+    public static LocaleStrings load(Class<?> owner, String resourceName, int locale) {
+        try (InputStream in = owner.getResourceAsStream(resourceName)) {
+            if (in == null) {
+                throw new IllegalStateException("Resource not found: " + resourceName);
+            }
+            DataInputStream table = new DataInputStream(new BufferedInputStream(in));
+            int[] offsets = new int[table.readInt() + 1];
+            for (int n = 0; n < offsets.length; n++) {
+                offsets[n] = table.readInt();
+            }
+            int locales = table.readInt();
+            if (locale < 0 || locale >= locales) {
+                throw new IllegalArgumentException("No locale " + locale + " in " + resourceName);
+            }
+            int[] ids = null;
+            for (int n = 0; n < locales; n++) {
+                int count = table.readInt();
+                if (n == locale) {
+                    ids = new int[count];
+                    for (int slot = 0; slot < count; slot++) {
+                        ids[slot] = table.readInt();
+                    }
+                } else {
+                    skip(table, (long) count * Integer.BYTES);
+                }
+            }
+
+            // The texts are read in the order they are stored, and those shared by messages are read once
+            int[] texts = ids.clone();
+            Arrays.sort(texts);
+            int distinct = 0;
+            int size = 0;
+            for (int text : texts) {
+                if (distinct == 0 || texts[distinct - 1] != text) {
+                    texts[distinct++] = text;
+                    size += offsets[text + 1] - offsets[text];
+                }
+            }
+            byte[] data = new byte[size];
+            int[] textStarts = new int[distinct];
+            int position = 0;
+            int end = 0;
+            for (int n = 0; n < distinct; n++) {
+                int text = texts[n];
+                skip(table, offsets[text] - position);
+                int length = offsets[text + 1] - offsets[text];
+                table.readFully(data, end, length);
+                textStarts[n] = end;
+                end += length;
+                position = offsets[text + 1];
+            }
+
+            int[] starts = new int[ids.length];
+            int[] ends = new int[ids.length];
+            for (int slot = 0; slot < ids.length; slot++) {
+                int n = Arrays.binarySearch(texts, 0, distinct, ids[slot]);
+                starts[slot] = textStarts[n];
+                ends[slot] = textStarts[n] + offsets[ids[slot] + 1] - offsets[ids[slot]];
+            }
+            return new LocaleStrings(data, starts, ends);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param slot The index of the message in the locale
+     */
+    public String get(int slot) {
+        // Strings are immutable, so decoding one twice in a race is harmless
+        String string = strings[slot];
+        if (string == null) {
+            string = new String(data, starts[slot], ends[slot] - starts[slot], StandardCharsets.UTF_8);
+            strings[slot] = string;
+        }
+        return string;
+    }
+
+    private static void skip(DataInputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            bytes -= skipped;
+        }
+    }
+}
@@ -8,4 +8,43 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.SOURCE)
 @Target(ElementType.TYPE)
 public @interface Messages {
+    /**
+     * How the messages without arguments are stored in the generated classes.
+     * {@link Storage#DEFAULT} uses the "nibiru.gen.messages.storage" processor option.
+     */
+    Storage storage() default Storage.DEFAULT;
+
+    /**
+     * How the messages are parsed.
+     * {@link Syntax#DEFAULT} uses the "nibiru.gen.messages.syntax" processor option.
+     */
+    Syntax syntax() default Syntax.DEFAULT;
+
+    enum Storage {
+        DEFAULT,
+        /**
+         * A string constant in the class of each locale.
+         */
+        CONSTANTS,
+        /**
+         * The messages of all the locales packed into a single UTF-8 resource, with each distinct
+         * text stored once. Only the texts of a locale are loaded, when the first one is used, and
+         * each one is decoded on first use.
+         */
+        TABLE
+    }
+
+    enum Syntax {
+        DEFAULT,
+        /**
+         * The text as written, with each {n} replaced by the n-th argument, as with string concatenation.
+         * Apostrophes are kept and numbers are not formatted.
+         */
+        PLAIN,
+        /**
+         * The {@link java.text.MessageFormat} syntax in the locale of the bundle, with plural and select
+         * arguments. Apostrophes must be doubled, and numbers are formatted for the locale.
+         */
+        MESSAGE_FORMAT
+    }
 }
@@ -5,8 +5,52 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
-@Retention(RetentionPolicy.SOURCE)
+// CLASS retention is required by Gradle for aggregating annotation processors
+@Retention(RetentionPolicy.CLASS)
 @Target(ElementType.METHOD)
 public @interface Resource {
     String value();
+
+    /**
+     * How the resource bytes are embedded in the generated holder class.
+     * {@link Encoding#DEFAULT} uses the "nibiru.gen.resource.encoding" processor option.
+     */
+    Encoding encoding() default Encoding.DEFAULT;
+
+    /**
+     * Keeps the loaded resource through a soft reference, so it can be reclaimed under
+     * memory pressure and loaded again on the next access.
+     */
+    boolean softReference() default false;
+
+    /**
+     * Charset used to decode the file when the method returns a String.
+     */
+    String charset() default "UTF-8";
+
+    /**
+     * How the resource is compressed inside the generated holder class. Compressed resources
+     * are inflated on first access. {@link Compression#DEFAULT} deflates resources whose size
+     * reaches the "nibiru.gen.resource.compressionThreshold" processor option, if present.
+     */
+    Compression compression() default Compression.DEFAULT;
+
+    enum Encoding {
+        DEFAULT,
+        /**
+         * One assignment statement per byte.
+         */
+        STATEMENTS,
+        /**
+         * Bytes packed into string constants and copied in bulk.
+         */
+        PACKED
+    }
+
+    enum Compression {
+        DEFAULT,
+        NONE,
+        DEFLATE,
+        GZIP
+    }
 }
@@ -0,0 +1,31 @@
+package org.nibiru.gen.api.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes the generated client of a service interface send the calls made within {@link #windowMillis()}
+ * of the first one, up to {@link #maxSize()} calls, as a single POST request to {@link #path()}.
+ * The generated {@code FooUnbatcher} answers those requests with an implementation of the interface.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Batched {
+    /**
+     * Path of the batch endpoint. Unlike the paths of the methods, it is not joined with the
+     * {@code @Path} of the interface.
+     */
+    String path();
+
+    /**
+     * Number of calls from which a batch is sent without waiting for the window to end.
+     */
+    int maxSize() default 20;
+
+    /**
+     * Time the first call of a batch waits for others.
+     */
+    long windowMillis() default 10;
+}
@@ -0,0 +1,108 @@
+package org.nibiru.gen.api.service;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Used by the generated clients of {@link Batched} services to collect calls. A batch is sent once its
+ * first call has waited for the window, or as soon as it is full.
+ *
+ * @param <C> The type of the calls
+ * @param <D> The type of what completes each call when the response of its batch arrives
+ */
+public final class Batcher<C, D> {
+    private final int maxSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Sender<C, D> sender;
+    private List<C> calls;
+    private List<D> completions;
+    @Nullable
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * @param scheduler Ends the windows. If null, a daemon thread shared by all the batchers is used.
+     */
+    public Batcher(int maxSize,
+                   long windowMillis,
+                   @Nullable ScheduledExecutorService scheduler,
+                   Sender<C, D> sender) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxSize);
+        }
+        if (sender == null) {
+            throw new NullPointerException("sender");
+        }
+        this.maxSize = maxSize;
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler != null ? scheduler : DefaultScheduler.INSTANCE;
+        this.sender = sender;
+        this.calls = new ArrayList<>();
+        this.completions = new ArrayList<>();
+    }
+
+    public void add(C call, D completion) {
+        List<C> batchCalls = null;
+        List<D> batchCompletions = null;
+        synchronized (this) {
+            calls.add(call);
+            completions.add(completion);
+            if (calls.size() >= maxSize) {
+                batchCalls = calls;
+                batchCompletions = completions;
+                reset();
+            } else if (flushTask == null) {
+                flushTask = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batchCalls != null) {
+            sender.send(batchCalls, batchCompletions);
+        }
+    }
+
+    /**
+     * Sends the pending calls, if any, without waiting for the window to end.
+     */
+    public void flush() {
+        List<C> batchCalls;
+        List<D> batchCompletions;
+        synchronized (this) {
+            if (calls.isEmpty()) {
+                return;
+            }
+            batchCalls = calls;
+            batchCompletions = completions;
+            reset();
+        }
+        sender.send(batchCalls, batchCompletions);
+    }
+
+    private void reset() {
+        calls = new ArrayList<>();
+        completions = new ArrayList<>();
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+    }
+
+    public interface Sender<C, D> {
+        /**
+         * @param completions The completion of each call, in the same order
+         */
+        void send(List<C> calls, List<D> completions);
+    }
+
+    private static final class DefaultScheduler {
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread thread = new Thread(r, "nibiru-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package org.nibiru.gen.api.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes the generated client keep the responses of a GET method, or of all the GET methods of an
+ * interface, for {@link #ttlMillis()}. Calls with the same path and query parameters share the same
+ * promise, so a call made while an identical one is in flight does not send another request.
+ * A rejected promise is not kept. The annotation of a method takes precedence over the one of its interface.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Cached {
+    /**
+     * Time a response is kept, from the moment it arrives.
+     */
+    long ttlMillis();
+
+    /**
+     * Number of responses kept for each method, the least recently used being evicted first.
+     */
+    int maxSize() default 100;
+}
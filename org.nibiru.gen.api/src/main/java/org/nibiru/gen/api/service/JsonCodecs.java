@@ -0,0 +1,18 @@
+package org.nibiru.gen.api.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes the generated client of a service interface write its request bodies and read its responses
+ * with JSON codecs generated in {@code FooJsonCodecs}, instead of the serializer of the
+ * {@code RemoteService}. Request bodies are passed to the
+ * {@code RemoteService} as JSON strings, and responses are requested as {@code String.class}, so it
+ * must send and return strings as they are.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JsonCodecs {
+}
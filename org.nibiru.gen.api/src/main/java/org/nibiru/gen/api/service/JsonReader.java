@@ -0,0 +1,366 @@
+package org.nibiru.gen.api.service;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Reads JSON values one at a time, for the codecs generated for {@link JsonCodecs} services.
+ * Commas are consumed by {@link #hasNext()}, which makes the reader accept some malformed JSON,
+ * such as a comma before the first member of an object. All the methods throw
+ * {@link IllegalArgumentException} if the JSON is malformed or does not have the expected value.
+ */
+public final class JsonReader {
+    private final String json;
+    private int position;
+
+    public JsonReader(String json) {
+        if (json == null) {
+            throw new NullPointerException("json");
+        }
+        this.json = json;
+    }
+
+    /**
+     * Reads a whole document, which must only have one value.
+     */
+    public static <T> T fromJson(String json, Function<JsonReader, T> reader) {
+        JsonReader jsonReader = new JsonReader(json);
+        T value = reader.apply(jsonReader);
+        jsonReader.endDocument();
+        return value;
+    }
+
+    /**
+     * Reads the elements of a document that is an array, or null for no elements, one at a time as
+     * the iterator is advanced, so they do not need to be kept in memory together, and those after the
+     * ones that are used are never read.
+     *
+     * @throws IllegalArgumentException From the iterator too, if an element is malformed
+     */
+    public static <T> Iterator<T> elements(String json, Function<JsonReader, T> reader) {
+        return new Elements<>(new JsonReader(json), reader);
+    }
+
+    public void beginObject() {
+        expect('{');
+    }
+
+    public void endObject() {
+        expect('}');
+    }
+
+    public void beginArray() {
+        expect('[');
+    }
+
+    public void endArray() {
+        expect(']');
+    }
+
+    /**
+     * @return true if the current object or array has another member or element
+     */
+    public boolean hasNext() {
+        char c = peek();
+        if (c == ',') {
+            position++;
+            c = peek();
+        }
+        return c != '}' && c != ']';
+    }
+
+    public String nextName() {
+        String name = readString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Consumes the next value if it is null.
+     *
+     * @return true if the next value was null
+     */
+    public boolean nextNull() {
+        if (peek() == 'n') {
+            expectLiteral("null");
+            return true;
+        }
+        return false;
+    }
+
+    @Nullable
+    public String nextString() {
+        return nextNull()
+                ? null
+                : readString();
+    }
+
+    public boolean nextBoolean() {
+        if (peek() == 't') {
+            expectLiteral("true");
+            return true;
+        }
+        expectLiteral("false");
+        return false;
+    }
+
+    public byte nextByte() {
+        int value = nextInt();
+        if ((byte) value != value) {
+            throw syntaxError("Number out of byte range: " + value);
+        }
+        return (byte) value;
+    }
+
+    public short nextShort() {
+        int value = nextInt();
+        if ((short) value != value) {
+            throw syntaxError("Number out of short range: " + value);
+        }
+        return (short) value;
+    }
+
+    /**
+     * Reads a string of a single character.
+     */
+    public char nextChar() {
+        String value = nextString();
+        if (value == null || value.length() != 1) {
+            throw syntaxError("Expected a single character: " + value);
+        }
+        return value.charAt(0);
+    }
+
+    public int nextInt() {
+        long value = nextLong();
+        if ((int) value != value) {
+            throw syntaxError("Number out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a number that is a long, which may be written with a fraction or an exponent, such as
+     * {@code 1.0} or {@code 1e3}, as long as its value is integral and in range.
+     */
+    public long nextLong() {
+        String number = readNumber();
+        try {
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                return Long.parseLong(number);
+            }
+            // Exactly, since near the ends of the range a double can not tell the values apart
+            return new BigDecimal(number).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw syntaxError("Not a long: " + number);
+        }
+    }
+
+    public double nextDouble() {
+        return parseDouble(readNumber());
+    }
+
+    /**
+     * Skips the next value, with all its members or elements.
+     */
+    public void skipValue() {
+        switch (peek()) {
+            case '{':
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+                break;
+            case '[':
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+                break;
+            case '"':
+                readString();
+                break;
+            case 't':
+            case 'f':
+                nextBoolean();
+                break;
+            case 'n':
+                nextNull();
+                break;
+            default:
+                readNumber();
+        }
+    }
+
+    private void endDocument() {
+        skipWhitespace();
+        if (position < json.length()) {
+            throw syntaxError("Unexpected content after the value");
+        }
+    }
+
+    private String readString() {
+        expect('"');
+        int start = position;
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c == '"') {
+                return json.substring(start, position++);
+            }
+            if (c == '\\') {
+                return readEscapedString(new StringBuilder().append(json, start, position));
+            }
+            position++;
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private String readEscapedString(StringBuilder string) {
+        while (position < json.length()) {
+            char c = json.charAt(position++);
+            if (c == '"') {
+                return string.toString();
+            }
+            if (c != '\\') {
+                string.append(c);
+                continue;
+            }
+            if (position >= json.length()) {
+                break;
+            }
+            char escaped = json.charAt(position++);
+            switch (escaped) {
+                case 'b':
+                    string.append('\b');
+                    break;
+                case 'f':
+                    string.append('\f');
+                    break;
+                case 'n':
+                    string.append('\n');
+                    break;
+                case 'r':
+                    string.append('\r');
+                    break;
+                case 't':
+                    string.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > json.length()) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+                    try {
+                        string.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    string.append(escaped);
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private String readNumber() {
+        peek();
+        int start = position;
+        while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) {
+            position++;
+        }
+        if (start == position) {
+            throw syntaxError("Expected a value");
+        }
+        return json.substring(start, position);
+    }
+
+    private double parseDouble(String number) {
+        try {
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Not a number: " + number);
+        }
+    }
+
+    private void expectLiteral(String literal) {
+        if (!json.startsWith(literal, position)) {
+            throw syntaxError("Expected " + literal);
+        }
+        position += literal.length();
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw syntaxError("Expected '" + c + "'");
+        }
+        position++;
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (position >= json.length()) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return json.charAt(position);
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private IllegalArgumentException syntaxError(String message) {
+        return new IllegalArgumentException("Malformed JSON: " + message + " at position " + position);
+    }
+
+    private static final class Elements<T> implements Iterator<T> {
+        private final JsonReader jsonReader;
+        private final Function<JsonReader, T> reader;
+        private boolean ended;
+
+        private Elements(JsonReader jsonReader, Function<JsonReader, T> reader) {
+            this.jsonReader = jsonReader;
+            this.reader = reader;
+            if (jsonReader.nextNull()) {
+                jsonReader.endDocument();
+                ended = true;
+            } else {
+                jsonReader.beginArray();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ended) {
+                return false;
+            }
+            if (jsonReader.hasNext()) {
+                return true;
+            }
+            jsonReader.endArray();
+            jsonReader.endDocument();
+            ended = true;
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return reader.apply(jsonReader);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.nibiru.gen.api.service;
+
+import javax.annotation.Nullable;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes JSON values one at a time, for the codecs generated for {@link JsonCodecs} services.
+ * Commas between members and elements are added by the writer.
+ */
+public final class JsonWriter {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder json;
+    private boolean separate;
+
+    public JsonWriter() {
+        this.json = new StringBuilder();
+    }
+
+    /**
+     * Writes a whole document.
+     */
+    public static <T> String toJson(@Nullable T value, BiConsumer<JsonWriter, T> writer) {
+        JsonWriter jsonWriter = new JsonWriter();
+        writer.accept(jsonWriter, value);
+        return jsonWriter.toString();
+    }
+
+    public JsonWriter beginObject() {
+        separate();
+        json.append('{');
+        separate = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        json.append('}');
+        separate = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separate();
+        json.append('[');
+        separate = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        json.append(']');
+        separate = true;
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        separate();
+        string(name);
+        json.append(':');
+        separate = false;
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        separate();
+        json.append("null");
+        separate = true;
+        return this;
+    }
+
+    public JsonWriter value(@Nullable String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        separate();
+        string(value);
+        separate = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        separate();
+        json.append(value);
+        separate = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separate();
+        json.append(value);
+        separate = true;
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the value is NaN or infinite, which JSON can not represent
+     */
+    public JsonWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON numbers can not be " + value);
+        }
+        separate();
+        json.append(value);
+        separate = true;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return json.toString();
+    }
+
+    private void separate() {
+        if (separate) {
+            json.append(',');
+        }
+    }
+
+    private void string(String value) {
+        json.append('"');
+        int start = 0;
+        for (int n = 0; n < value.length(); n++) {
+            char c = value.charAt(n);
+            if (c >= ' ' && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            json.append(value, start, n);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    json.append("\\u")
+                            .append(HEX_DIGITS[(c >> 12) & 0xf])
+                            .append(HEX_DIGITS[(c >> 8) & 0xf])
+                            .append(HEX_DIGITS[(c >> 4) & 0xf])
+                            .append(HEX_DIGITS[c & 0xf]);
+            }
+            start = n + 1;
+        }
+        json.append(value, start, value.length())
+                .append('"');
+    }
+}
@@ -0,0 +1,145 @@
+package org.nibiru.gen.api.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latencies and the throughput of each endpoint of a {@link LoadTest}.
+ */
+public final class LoadReport {
+    private final long elapsedNanos;
+    private final List<Endpoint> endpoints;
+
+    LoadReport(long elapsedNanos, List<Endpoint> endpoints) {
+        this.elapsedNanos = elapsedNanos;
+        this.endpoints = Collections.unmodifiableList(endpoints);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return The report as a JSON object, with latencies in microseconds
+     */
+    public String toJson() {
+        JsonWriter writer = new JsonWriter()
+                .beginObject()
+                .name("elapsedMillis").value(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                .name("endpoints").beginArray();
+        for (Endpoint endpoint : endpoints) {
+            writer.beginObject()
+                    .name("name").value(endpoint.name)
+                    .name("calls").value(endpoint.calls)
+                    .name("errors").value(endpoint.errors)
+                    .name("callsPerSecond").value(endpoint.getCallsPerSecond())
+                    .name("p50Micros").value(micros(endpoint.p50Nanos))
+                    .name("p99Micros").value(micros(endpoint.p99Nanos))
+                    .name("p999Micros").value(micros(endpoint.p999Nanos))
+                    .name("maxMicros").value(micros(endpoint.maxNanos))
+                    .endObject();
+        }
+        return writer.endArray()
+                .endObject()
+                .toString();
+    }
+
+    /**
+     * @return A table with a line for each endpoint, with latencies in milliseconds
+     */
+    @Override
+    public String toString() {
+        int width = "endpoint".length();
+        for (Endpoint endpoint : endpoints) {
+            width = Math.max(width, endpoint.name.length());
+        }
+        String format = "%-" + width + "s %10s %8s %10s %9s %9s %9s %9s%n";
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, format,
+                "endpoint", "calls", "errors", "calls/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Endpoint endpoint : endpoints) {
+            table.append(String.format(Locale.ROOT, format,
+                    endpoint.name,
+                    endpoint.calls,
+                    endpoint.errors,
+                    String.format(Locale.ROOT, "%.1f", endpoint.getCallsPerSecond()),
+                    millis(endpoint.p50Nanos),
+                    millis(endpoint.p99Nanos),
+                    millis(endpoint.p999Nanos),
+                    millis(endpoint.maxNanos)));
+        }
+        return table.toString();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1e3;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    public static final class Endpoint {
+        private final String name;
+        private final long calls;
+        private final long errors;
+        private final long elapsedNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long p999Nanos;
+        private final long maxNanos;
+
+        Endpoint(String name, LatencyHistogram latencies, long errors, long elapsedNanos) {
+            this.name = name;
+            this.calls = latencies.getCount();
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.p50Nanos = latencies.getPercentileNanos(50);
+            this.p99Nanos = latencies.getPercentileNanos(99);
+            this.p999Nanos = latencies.getPercentileNanos(99.9);
+            this.maxNanos = latencies.getMaxNanos();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The number of calls, including those that failed
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getCallsPerSecond() {
+            return elapsedNanos > 0
+                    ? calls * 1e9 / elapsedNanos
+                    : 0;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getP999Nanos() {
+            return p999Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.nibiru.gen.api.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Calls the endpoints of a service in turn from a number of threads, each of which waits for its call
+ * to complete before it starts the next one, at most at a target rate, and measures the latency and
+ * the throughput of each endpoint. The generated {@code FooLoadDriver} builds a load test with every
+ * method of {@code Foo}.
+ * <p>
+ * With a target rate, the latency of a call is measured from the time it was scheduled to start, so
+ * calls that start late because the previous ones were slow count that delay.
+ */
+public final class LoadTest {
+    private final Map<String, Call> endpoints;
+    private final int concurrency;
+    private final double rate;
+    private final long durationNanos;
+    private final long maxCalls;
+    private final long timeoutNanos;
+
+    private LoadTest(Builder builder) {
+        this.endpoints = new LinkedHashMap<>(builder.endpoints);
+        this.concurrency = builder.concurrency;
+        this.rate = builder.rate;
+        this.durationNanos = TimeUnit.MILLISECONDS.toNanos(builder.durationMillis);
+        this.maxCalls = builder.maxCalls;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.timeoutMillis);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs the calls in new threads, and waits for them to end.
+     */
+    public LoadReport run() throws InterruptedException {
+        List<String> names = new ArrayList<>(endpoints.keySet());
+        List<Call> calls = new ArrayList<>(endpoints.values());
+        List<LatencyHistogram> latencies = new ArrayList<>();
+        List<AtomicLong> errors = new ArrayList<>();
+        for (int n = 0; n < calls.size(); n++) {
+            latencies.add(new LatencyHistogram());
+            errors.add(new AtomicLong());
+        }
+        AtomicLong next = new AtomicLong();
+        long intervalNanos = rate > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) / rate)
+                : 0;
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+
+        Runnable worker = () -> {
+            // Interrupted when run() is, and parking or waiting for a call then no longer blocks
+            while (!Thread.currentThread().isInterrupted()) {
+                long index = next.getAndIncrement();
+                if (maxCalls > 0 && index >= maxCalls) {
+                    return;
+                }
+                long scheduled = start + index * intervalNanos;
+                if (intervalNanos > 0) {
+                    if (scheduled - deadline >= 0) {
+                        return;
+                    }
+                    long delay;
+                    while ((delay = scheduled - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(delay);
+                        if (Thread.currentThread().isInterrupted()) {
+                            return;
+                        }
+                    }
+                } else {
+                    scheduled = System.nanoTime();
+                    if (scheduled - deadline >= 0) {
+                        return;
+                    }
+                }
+                int endpoint = (int) (index % calls.size());
+                Completion completion = new Completion();
+                try {
+                    calls.get(endpoint).start(index / calls.size(), completion);
+                } catch (RuntimeException e) {
+                    completion.failed(e);
+                }
+                if (!completion.await(timeoutNanos)) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    completion.failed(new TimeoutException("Call to " + names.get(endpoint) + " timed out"));
+                }
+                latencies.get(endpoint).record(completion.end - scheduled);
+                if (completion.error != null) {
+                    errors.get(endpoint).incrementAndGet();
+                }
+            }
+        };
+        List<Thread> threads = new ArrayList<>();
+        for (int n = 0; n < concurrency; n++) {
+            Thread thread = new Thread(worker, "nibiru-load-" + n);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            throw e;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        List<LoadReport.Endpoint> reports = new ArrayList<>();
+        for (int n = 0; n < calls.size(); n++) {
+            reports.add(new LoadReport.Endpoint(names.get(n), latencies.get(n), errors.get(n).get(), elapsedNanos));
+        }
+        return new LoadReport(elapsedNanos, reports);
+    }
+
+    /**
+     * Starts a call of an endpoint.
+     */
+    public interface Call {
+        /**
+         * @param n The number of the call of this endpoint, from 0, for instance to make distinct arguments
+         * @param completion Must be completed once the call is, from any thread
+         */
+        void start(long n, Completion completion);
+    }
+
+    /**
+     * Completes a call. Only the first completion counts.
+     */
+    public static final class Completion {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile long end;
+        private volatile Exception error;
+
+        private Completion() {
+        }
+
+        public void succeeded() {
+            complete(null);
+        }
+
+        public void failed(Exception error) {
+            complete(error);
+        }
+
+        private synchronized void complete(Exception error) {
+            if (latch.getCount() == 0) {
+                return;
+            }
+            this.end = System.nanoTime();
+            this.error = error;
+            latch.countDown();
+        }
+
+        private boolean await(long timeoutNanos) {
+            try {
+                return latch.await(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final Map<String, Call> endpoints = new LinkedHashMap<>();
+        private int concurrency = 1;
+        private double rate;
+        private long durationMillis = 10_000;
+        private long maxCalls;
+        private long timeoutMillis = 30_000;
+
+        private Builder() {
+        }
+
+        public Builder endpoint(String name, Call call) {
+            if (name == null || call == null) {
+                throw new NullPointerException(name == null ? "name" : "call");
+            }
+            if (endpoints.putIfAbsent(name, call) != null) {
+                throw new IllegalArgumentException("Duplicate endpoint " + name);
+            }
+            return this;
+        }
+
+        /**
+         * Removes an endpoint, so it is not called.
+         */
+        public Builder without(String name) {
+            if (endpoints.remove(name) == null) {
+                throw new IllegalArgumentException("No endpoint " + name);
+            }
+            return this;
+        }
+
+        /**
+         * @param concurrency The number of calls in flight at most, 1 by default
+         */
+        public Builder concurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * @param callsPerSecond The rate at which calls of all the endpoints start, or 0, the default,
+         *                       to start each call as soon as a thread is free
+         */
+        public Builder rate(double callsPerSecond) {
+            if (callsPerSecond < 0 || Double.isNaN(callsPerSecond)) {
+                throw new IllegalArgumentException("Rate must not be negative: " + callsPerSecond);
+            }
+            this.rate = callsPerSecond;
+            return this;
+        }
+
+        /**
+         * @param millis The time after which no call starts, 10 seconds by default
+         */
+        public Builder duration(long millis) {
+            this.durationMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param maxCalls The number of calls of all the endpoints after which no call starts, or 0,
+         *                 the default, for no limit
+         */
+        public Builder maxCalls(long maxCalls) {
+            this.maxCalls = maxCalls;
+            return this;
+        }
+
+        /**
+         * @param millis The time after which a call that did not complete counts as failed, 30 seconds by default
+         */
+        public Builder timeout(long millis) {
+            this.timeoutMillis = millis;
+            return this;
+        }
+
+        public LoadTest build() {
+            if (endpoints.isEmpty()) {
+                throw new IllegalStateException("Load test has no endpoints");
+            }
+            return new LoadTest(this);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.nibiru.gen.api.service;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link ServerExchange} made in the same process, which keeps its response instead of sending
+ * it, so generated routers can be tested and benchmarked without a server.
+ */
+public final class LocalExchange implements ServerExchange {
+    private final String method;
+    private final String path;
+    private final Map<String, String> queryParameters;
+    @Nullable
+    private final Object entity;
+    private int status;
+    @Nullable
+    private Object responseEntity;
+    @Nullable
+    private Throwable failure;
+
+    /**
+     * @param uri The percent-encoded path, and the query string if any, such as "users/42?sort=name"
+     * @param entity The body of the request, as {@link #getEntity(Class)} returns it
+     */
+    public LocalExchange(String method, String uri, @Nullable Object entity) {
+        if (method == null || uri == null) {
+            throw new NullPointerException(method == null ? "method" : "uri");
+        }
+        this.method = method;
+        this.entity = entity;
+        this.queryParameters = new HashMap<>();
+        int question = uri.indexOf('?');
+        if (question < 0) {
+            this.path = uri;
+        } else {
+            this.path = uri.substring(0, question);
+            parseQuery(uri.substring(question + 1));
+        }
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Nullable
+    @Override
+    public String getQueryParameter(String name) {
+        return queryParameters.get(name);
+    }
+
+    @Nullable
+    @Override
+    public <T> T getEntity(Class<T> type) {
+        if (entity != null && !type.isInstance(entity)) {
+            throw new IllegalArgumentException("Body is not a " + type.getName() + ": " + entity);
+        }
+        return type.cast(entity);
+    }
+
+    @Override
+    public synchronized void respond(int status, @Nullable Object entity) {
+        complete(status);
+        this.responseEntity = entity;
+    }
+
+    @Override
+    public synchronized void fail(int status, @Nullable Throwable cause) {
+        complete(status);
+        this.failure = cause;
+    }
+
+    /**
+     * @return The status of the response, or 0 if it was not sent yet
+     */
+    public synchronized int getStatus() {
+        return status;
+    }
+
+    @Nullable
+    public synchronized Object getResponseEntity() {
+        return responseEntity;
+    }
+
+    @Nullable
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    private void complete(int status) {
+        if (this.status != 0) {
+            throw new IllegalStateException("Response already sent for " + method + " " + path);
+        }
+        this.status = status;
+    }
+
+    private void parseQuery(String query) {
+        int start = 0;
+        while (start < query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            int equals = query.indexOf('=', start);
+            if (equals < 0 || equals > end) {
+                equals = end;
+            }
+            if (equals > start) {
+                String name = Uris.decode(query.substring(start, equals).replace('+', ' '));
+                String value = equals < end
+                        ? Uris.decode(query.substring(equals + 1, end).replace('+', ' '))
+                        : "";
+                queryParameters.putIfAbsent(name, value);
+            }
+            start = end + 1;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.nibiru.gen.api.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes the generated client of an interface record each request of each method in the
+ * {@link MetricsSink} passed to its constructor: when it is sent, the size of its body, and when its
+ * promise is resolved or rejected, the latency since it was sent and the size of the response. The
+ * clients of other interfaces have no such code. Calls answered by a {@link Cached} response send no
+ * request, and are not recorded.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Metered {
+}
@@ -0,0 +1,38 @@
+package org.nibiru.gen.api.service;
+
+import javax.annotation.Nullable;
+
+/**
+ * Receives the metrics of the clients of {@link Metered} services. {@link ServiceMetrics} keeps them
+ * in memory, and other implementations can forward them to a monitoring system. The recorders are
+ * called by the threads that send requests and complete promises, so they should not block.
+ */
+public interface MetricsSink {
+    /**
+     * Called once for each method when a client is created.
+     *
+     * @param service The qualified name of the service interface
+     * @param method  The name of the method
+     */
+    EndpointRecorder endpoint(String service, String method);
+
+    interface EndpointRecorder {
+        /**
+         * Called before a request is sent.
+         *
+         * @param requestSize The length of the JSON body of a {@link JsonCodecs} service, 0 if there is
+         *                    no body, or -1 if the body is serialized by the
+         *                    {@code RemoteService}
+         */
+        void started(long requestSize);
+
+        /**
+         * Called once the promise of the request is resolved or rejected.
+         *
+         * @param responseSize The length of the JSON response of a {@link JsonCodecs} service, or -1
+         *                     if it is unknown
+         * @param error        The exception the promise was rejected with, or null if it was resolved
+         */
+        void completed(long latencyNanos, long responseSize, @Nullable Exception error);
+    }
+}
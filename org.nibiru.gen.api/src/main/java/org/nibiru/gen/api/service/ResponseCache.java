@@ -0,0 +1,124 @@
+package org.nibiru.gen.api.service;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Used by the generated clients of {@link Cached} methods to keep the promises of their responses,
+ * keyed by {@link #key(String, Object...)}. The least recently used entry is evicted once the cache is full.
+ *
+ * @param <V> The type of the promises
+ */
+public final class ResponseCache<V> {
+    private final long ttlNanos;
+    private final Map<String, CacheEntry<V>> entries;
+
+    public ResponseCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<String, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return The value of the key, unless it is missing or expired
+     */
+    @Nullable
+    public synchronized V get(String key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.inFlight && System.nanoTime() - entry.expiration > 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Sets the value of the key, which expires after the TTL of the cache. Putting the same value
+     * again restarts its TTL.
+     */
+    public synchronized void put(String key, V value) {
+        entries.put(key, new CacheEntry<>(value, false, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Sets the value of the key, which does not expire until {@link #resolved(String, Object)}, so
+     * identical requests share it however long it is in flight. It can still be evicted once the
+     * cache is full.
+     */
+    public synchronized void putInFlight(String key, V value) {
+        entries.put(key, new CacheEntry<>(value, true, 0));
+    }
+
+    /**
+     * Starts the TTL of the value of the key, only if its value is still the given one, so a value
+     * that was evicted or replaced while in flight is not put back.
+     */
+    public synchronized void resolved(String key, V value) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry != null && entry.value == value) {
+            entries.put(key, new CacheEntry<>(value, false, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    /**
+     * Removes the key, only if its value is still the given one.
+     */
+    public synchronized void remove(String key, V value) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry != null && entry.value == value) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @param namesAndValues The names and values of the query parameters, in the order they are sent.
+     *                       Null values are left out, as they are not sent.
+     * @return A key that is only equal to the key of another request if it has the same path and
+     * query parameters
+     */
+    public static String key(String path, Object... namesAndValues) {
+        StringBuilder key = new StringBuilder(path);
+        for (int n = 0; n < namesAndValues.length; n += 2) {
+            Object value = namesAndValues[n + 1];
+            if (value != null) {
+                String text = value.toString();
+                // The length of the value keeps separators in values from making two keys equal
+                key.append('&')
+                        .append(namesAndValues[n])
+                        .append('=')
+                        .append(text.length())
+                        .append(':')
+                        .append(text);
+            }
+        }
+        return key.toString();
+    }
+
+    private static final class CacheEntry<V> {
+        private final V value;
+        private final boolean inFlight;
+        private final long expiration;
+
+        private CacheEntry(V value, boolean inFlight, long expiration) {
+            this.value = value;
+            this.inFlight = inFlight;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.nibiru.gen.api.service;
+
+import javax.annotation.Nullable;
+
+/**
+ * A request routed by a generated {@code FooRouter}, and its response. Servers adapt their own
+ * requests and responses to it, and {@link LocalExchange} stands in for them in tests.
+ */
+public interface ServerExchange {
+    /**
+     * @return The HTTP method, such as "GET"
+     */
+    String getMethod();
+
+    /**
+     * @return The percent-encoded path, without the query string
+     */
+    String getPath();
+
+    /**
+     * @return The first decoded value of the query parameter, or null if the request does not have it
+     */
+    @Nullable
+    String getQueryParameter(String name);
+
+    /**
+     * @return The body of the request, deserialized to the type. The router of a {@link JsonCodecs}
+     * service asks for it as a {@code String}, and reads it with its codecs.
+     * @throws IllegalArgumentException If the body can not be read as the type
+     */
+    @Nullable
+    <T> T getEntity(Class<T> type);
+
+    /**
+     * Sends the response. The value of the promise of a {@link JsonCodecs} service is written with
+     * its codecs, and the entity is then a {@code String}.
+     */
+    void respond(int status, @Nullable Object entity);
+
+    /**
+     * Sends an error response: 400 if the path or query parameters or the body are malformed, 405
+     * if the path has no method for the HTTP method, or 500 if the service failed.
+     */
+    void fail(int status, @Nullable Throwable cause);
+}
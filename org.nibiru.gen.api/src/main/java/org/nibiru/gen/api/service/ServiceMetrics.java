@@ -0,0 +1,88 @@
+package org.nibiru.gen.api.service;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsSink} that keeps the metrics of each endpoint in memory, without locks: the number
+ * of calls, the calls in flight, the errors, the latencies, and the total sizes of the requests and
+ * responses whose size is known.
+ */
+public final class ServiceMetrics implements MetricsSink {
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public Endpoint endpoint(String service, String method) {
+        return endpoints.computeIfAbsent(service + "." + method, (name) -> new Endpoint());
+    }
+
+    /**
+     * @return The metrics of each endpoint, by the qualified name of its service and the name of its method
+     */
+    public Map<String, Endpoint> getEndpoints() {
+        return Collections.unmodifiableMap(endpoints);
+    }
+
+    public static final class Endpoint implements EndpointRecorder {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder requestSize = new LongAdder();
+        private final LongAdder responseSize = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private Endpoint() {
+        }
+
+        @Override
+        public void started(long requestSize) {
+            calls.increment();
+            inFlight.increment();
+            if (requestSize > 0) {
+                this.requestSize.add(requestSize);
+            }
+        }
+
+        @Override
+        public void completed(long latencyNanos, long responseSize, @Nullable Exception error) {
+            inFlight.decrement();
+            latencies.record(latencyNanos);
+            if (responseSize > 0) {
+                this.responseSize.add(responseSize);
+            }
+            if (error != null) {
+                errors.increment();
+            }
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getRequestSize() {
+            return requestSize.sum();
+        }
+
+        public long getResponseSize() {
+            return responseSize.sum();
+        }
+
+        /**
+         * @return The latencies of the completed calls
+         */
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.nibiru.gen.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Used by the generated service clients to build request paths, and by the generated routers to
+ * split them.
+ */
+public final class Uris {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private Uris() {
+    }
+
+    /**
+     * Percent-encodes the value of a path parameter, so it stays a single path segment.
+     * Only unreserved characters (letters, digits, '-', '.', '_' and '~') are kept as is, and values
+     * made only of them are returned without copying. The dots of "." and ".." are encoded too, since
+     * as segments they would be removed, or remove the segment before them, when the path is normalized.
+     *
+     * @param name The name of the parameter, for the error message
+     * @throws IllegalArgumentException If the value is null or empty, which would leave an empty segment
+     */
+    public static String pathSegment(String name, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Path parameter " + name + " is null");
+        }
+        String text = value.toString();
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Path parameter " + name + " is empty");
+        }
+        int n = 0;
+        while (n < text.length() && isUnreserved(text.charAt(n))) {
+            n++;
+        }
+        if (n == text.length()) {
+            if (text.equals(".")) {
+                return "%2E";
+            } else if (text.equals("..")) {
+                return "%2E%2E";
+            }
+            return text;
+        }
+        byte[] bytes = text.substring(n).getBytes(StandardCharsets.UTF_8);
+        StringBuilder encoded = new StringBuilder(n + bytes.length * 3)
+                .append(text, 0, n);
+        for (byte b : bytes) {
+            if (b >= 0 && isUnreserved((char) b)) {
+                encoded.append((char) b);
+            } else {
+                encoded.append('%')
+                        .append(HEX_DIGITS[(b >> 4) & 0xf])
+                        .append(HEX_DIGITS[b & 0xf]);
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Splits a path into its percent-decoded segments, leaving out empty ones, so "/users//42/" has
+     * the segments "users" and "42". Segments are split before they are decoded, so an encoded '/' stays
+     * in its segment.
+     *
+     * @throws IllegalArgumentException If a segment has a malformed escape sequence
+     */
+    public static String[] pathSegments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                segments.add(decode(path.substring(start, end)));
+            }
+            start = end + 1;
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+    /**
+     * Decodes the UTF-8 escape sequences of a percent-encoded string. Strings without them are
+     * returned without copying.
+     *
+     * @throws IllegalArgumentException If an escape sequence is malformed
+     */
+    public static String decode(String text) {
+        int n = text.indexOf('%');
+        if (n < 0) {
+            return text;
+        }
+        StringBuilder decoded = new StringBuilder(text.length())
+                .append(text, 0, n);
+        byte[] bytes = new byte[text.length() / 3];
+        while (n < text.length()) {
+            char c = text.charAt(n);
+            if (c != '%') {
+                decoded.append(c);
+                n++;
+                continue;
+            }
+            // Consecutive escape sequences are decoded together, as they may be a single character
+            int count = 0;
+            while (n < text.length() && text.charAt(n) == '%') {
+                if (n + 2 >= text.length()) {
+                    throw new IllegalArgumentException("Incomplete escape sequence in " + text);
+                }
+                int high = Character.digit(text.charAt(n + 1), 16);
+                int low = Character.digit(text.charAt(n + 2), 16);
+                if (high < 0 || low < 0) {
+                    throw new IllegalArgumentException("Invalid escape sequence in " + text);
+                }
+                bytes[count++] = (byte) ((high << 4) | low);
+                n += 3;
+            }
+            decoded.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+        }
+        return decoded.toString();
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+}
@@ -0,0 +1,73 @@
+package org.nibiru.gen.benchmarks;
+
+import com.google.common.base.Functions;
+import org.nibiru.async.core.api.promise.Deferred;
+import org.nibiru.async.core.api.promise.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full batch of {@link #CALLS} calls through the {@link BatchedBenchmarkService} client generated
+ * by the ServiceProcessor, answered by its generated unbatcher through a {@link LoopbackRemoteService}.
+ * The batch is sent by the last call, since it fills it, so the window never elapses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BatchBenchmark {
+    static final int CALLS = 16;
+
+    private LoopbackRemoteService remoteService;
+    private BatchedBenchmarkService service;
+    private SearchQuery query;
+
+    @Setup
+    public void setUp() {
+        remoteService = new LoopbackRemoteService(new BatchedBenchmarkService() {
+            @Override
+            public Promise<SearchResult, Exception> item(int id) {
+                return result(id);
+            }
+
+            @Override
+            public Promise<SearchResult, Exception> search(SearchQuery query) {
+                return result(query.page);
+            }
+        });
+        service = new BatchedBenchmarkServiceImpl(remoteService, Functions.identity(), null);
+        query = new SearchQuery();
+        query.text = "nibiru";
+        query.page = 3;
+    }
+
+    @Benchmark
+    public int batch(Blackhole blackhole) {
+        for (int n = 0; n < CALLS; n++) {
+            (n % 2 == 0 ? service.item(n) : service.search(query))
+                    .then(blackhole::consume);
+        }
+        return remoteService.getRequests();
+    }
+
+    private static Promise<SearchResult, Exception> result(int total) {
+        SearchResult result = new SearchResult();
+        result.total = total;
+        Deferred<SearchResult, Exception> deferred = Deferred.defer();
+        deferred.resolve(result);
+        return deferred.promise();
+    }
+}
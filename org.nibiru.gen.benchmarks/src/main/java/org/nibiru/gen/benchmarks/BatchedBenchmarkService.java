@@ -0,0 +1,20 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.Batched;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+@Path("batched")
+@Batched(path = "batched/batch", maxSize = BatchBenchmark.CALLS)
+public interface BatchedBenchmarkService {
+    @GET
+    @Path("items/{id}")
+    Promise<SearchResult, Exception> item(@PathParam("id") int id);
+
+    @GET
+    @Path("search")
+    Promise<SearchResult, Exception> search(SearchQuery query);
+}
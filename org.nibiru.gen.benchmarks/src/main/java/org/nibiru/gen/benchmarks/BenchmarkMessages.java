@@ -0,0 +1,16 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.gen.api.i18n.Messages;
+
+@Messages(syntax = Messages.Syntax.MESSAGE_FORMAT)
+public interface BenchmarkMessages {
+    String title();
+
+    String greeting(String name);
+
+    String unread(String name, int count);
+
+    String transfer(String from, String to, long amount, String currency);
+
+    String files(String name, int count);
+}
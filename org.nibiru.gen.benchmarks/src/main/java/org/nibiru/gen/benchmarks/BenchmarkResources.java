@@ -0,0 +1,20 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.gen.api.resource.Resource;
+
+/**
+ * The files are written by the generateBenchmarkResources task.
+ */
+public interface BenchmarkResources {
+    @Resource("data-64k.bin")
+    byte[] packed();
+
+    @Resource(value = "data-64k.bin", encoding = Resource.Encoding.STATEMENTS)
+    byte[] statements();
+
+    @Resource(value = "data-64k.bin", softReference = true)
+    byte[] softReference();
+
+    @Resource("text-64k.txt")
+    String text();
+}
@@ -0,0 +1,30 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.async.core.api.promise.Promise;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+public interface BenchmarkService {
+    @GET
+    @Path("status")
+    Promise<SearchResult, Exception> status();
+
+    @GET
+    @Path("item")
+    Promise<SearchResult, Exception> item(int id);
+
+    @GET
+    @Path("users/{user}/items/{id}")
+    Promise<SearchResult, Exception> userItem(@PathParam("user") String user, @PathParam("id") int id);
+
+    @GET
+    @Path("search")
+    Promise<SearchResult, Exception> search(SearchQuery query);
+
+    @POST
+    @Path("search")
+    Promise<SearchResult, Exception> post(SearchQuery query);
+}
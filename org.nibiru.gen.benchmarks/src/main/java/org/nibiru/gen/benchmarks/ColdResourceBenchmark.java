@@ -0,0 +1,63 @@
+package org.nibiru.gen.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First access to a resource, which loads and initializes its holder class.
+ * Every fork measures a single invocation, so the holder is always cold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ColdResourceBenchmark {
+    private ColdResources resources;
+
+    @Setup
+    public void setUp() {
+        resources = new ColdResourcesImpl();
+    }
+
+    @Benchmark
+    public byte[] bytes1k() {
+        return resources.bytes1k();
+    }
+
+    @Benchmark
+    public byte[] bytes64k() {
+        return resources.bytes64k();
+    }
+
+    @Benchmark
+    public byte[] bytes1m() {
+        return resources.bytes1m();
+    }
+
+    @Benchmark
+    public String text1k() {
+        return resources.text1k();
+    }
+
+    @Benchmark
+    public String text64k() {
+        return resources.text64k();
+    }
+
+    @Benchmark
+    public String text1m() {
+        return resources.text1m();
+    }
+}
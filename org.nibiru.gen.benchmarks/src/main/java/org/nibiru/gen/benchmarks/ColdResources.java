@@ -0,0 +1,23 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.gen.api.resource.Resource;
+
+public interface ColdResources {
+    @Resource("data-1k.bin")
+    byte[] bytes1k();
+
+    @Resource("data-64k.bin")
+    byte[] bytes64k();
+
+    @Resource("data-1m.bin")
+    byte[] bytes1m();
+
+    @Resource("text-1k.txt")
+    String text1k();
+
+    @Resource("text-64k.txt")
+    String text64k();
+
+    @Resource("text-1m.txt")
+    String text1m();
+}
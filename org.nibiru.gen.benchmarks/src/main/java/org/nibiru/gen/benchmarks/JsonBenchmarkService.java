@@ -0,0 +1,20 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.JsonCodecs;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import java.util.Iterator;
+import java.util.List;
+
+@JsonCodecs
+public interface JsonBenchmarkService {
+    @POST
+    @Path("search")
+    Promise<List<SearchResult>, Exception> search(SearchQuery query);
+
+    @POST
+    @Path("search/stream")
+    Promise<Iterator<SearchResult>, Exception> streamSearch(SearchQuery query);
+}
@@ -0,0 +1,83 @@
+package org.nibiru.gen.benchmarks;
+
+import com.google.common.collect.Lists;
+import org.nibiru.gen.api.service.JsonReader;
+import org.nibiru.gen.api.service.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a request and reading a response of {@link JsonBenchmarkService} with the codecs generated
+ * by the ServiceProcessor, as a whole list or one element at a time, as its streamed method does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JsonCodecBenchmark {
+    @Param({"10", "1000"})
+    public int results;
+
+    private SearchQuery query;
+    private String response;
+
+    @Setup
+    public void setUp() {
+        query = new SearchQuery();
+        query.text = "nibiru";
+        query.page = 3;
+        query.setPageSize(50);
+        query.setDescending(true);
+        List<SearchResult> list = Lists.newArrayList();
+        for (int n = 0; n < results; n++) {
+            SearchResult result = new SearchResult();
+            result.total = n;
+            list.add(result);
+        }
+        response = JsonWriter.toJson(list, JsonBenchmarkServiceJsonCodecs::writeListOfSearchResult);
+    }
+
+    @Benchmark
+    public String writeRequest() {
+        return JsonWriter.toJson(query, JsonBenchmarkServiceJsonCodecs::writeSearchQuery);
+    }
+
+    @Benchmark
+    public List<SearchResult> readResponse() {
+        return JsonReader.fromJson(response, JsonBenchmarkServiceJsonCodecs::readListOfSearchResult);
+    }
+
+    @Benchmark
+    public void streamResponse(Blackhole blackhole) {
+        Iterator<SearchResult> elements = JsonReader.elements(response, JsonBenchmarkServiceJsonCodecs::readSearchResult);
+        while (elements.hasNext()) {
+            blackhole.consume(elements.next());
+        }
+    }
+
+    @Benchmark
+    public SearchResult readFirstElement() {
+        return JsonReader.fromJson(response, JsonBenchmarkServiceJsonCodecs::readListOfSearchResult).get(0);
+    }
+
+    @Benchmark
+    public SearchResult streamFirstElement() {
+        return JsonReader.elements(response, JsonBenchmarkServiceJsonCodecs::readSearchResult).next();
+    }
+}
@@ -0,0 +1,42 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.mobile.core.api.http.HttpRequest;
+import org.nibiru.mobile.core.api.serializer.TypeLiteral;
+import org.nibiru.mobile.core.api.service.RemoteService;
+
+/**
+ * Answers the batches of the {@link BatchedBenchmarkService} implementation generated by the
+ * ServiceProcessor with its generated unbatcher, in the same thread and without serializing them.
+ */
+class LoopbackRemoteService implements RemoteService {
+    private final BatchedBenchmarkServiceUnbatcher unbatcher;
+    private Object lastRequestDto;
+    private int requests;
+
+    LoopbackRemoteService(BatchedBenchmarkService server) {
+        this.unbatcher = new BatchedBenchmarkServiceUnbatcher(server);
+    }
+
+    @Override
+    public HttpRequest.Builder requestBuilder(String path, Object requestDto) {
+        lastRequestDto = requestDto;
+        return new HttpRequest.Builder(path, requestDto);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Promise<T, Exception> invoke(HttpRequest request, Class<T> responseClass) {
+        requests++;
+        return (Promise<T, Exception>) (Promise<?, Exception>) unbatcher.unbatch((BatchedBenchmarkServiceBatch.Request) lastRequestDto);
+    }
+
+    @Override
+    public <T> Promise<T, Exception> invoke(HttpRequest request, TypeLiteral<T> responseType) {
+        throw new UnsupportedOperationException("Batches are answered with a class");
+    }
+
+    int getRequests() {
+        return requests;
+    }
+}
@@ -0,0 +1,69 @@
+package org.nibiru.gen.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls to the {@link BenchmarkMessages} implementation generated by the MessagesProcessor,
+ * with 0 to 4 arguments, and with a plural argument.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MessagesBenchmark {
+    private BenchmarkMessages messages;
+    // Not constants, so the JIT can not fold the messages
+    private String name;
+    private String other;
+    private int count;
+    private long amount;
+    private String currency;
+
+    @Setup
+    public void setUp() {
+        messages = new BenchmarkMessagesImpl();
+        name = "Alice";
+        other = "Bob";
+        count = 42;
+        amount = 1500L;
+        currency = "EUR";
+    }
+
+    @Benchmark
+    public String noArguments() {
+        return messages.title();
+    }
+
+    @Benchmark
+    public String oneArgument() {
+        return messages.greeting(name);
+    }
+
+    @Benchmark
+    public String twoArguments() {
+        return messages.unread(name, count);
+    }
+
+    @Benchmark
+    public String fourArguments() {
+        return messages.transfer(name, other, amount, currency);
+    }
+
+    @Benchmark
+    public String plural() {
+        return messages.files(name, count);
+    }
+}
@@ -0,0 +1,93 @@
+package org.nibiru.gen.benchmarks;
+
+import com.google.common.base.Functions;
+import org.nibiru.async.core.api.promise.Deferred;
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.ServiceMetrics;
+import org.nibiru.mobile.core.api.http.HttpRequest;
+import org.nibiru.mobile.core.api.serializer.TypeLiteral;
+import org.nibiru.mobile.core.api.service.RemoteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same calls through the {@link BenchmarkService} and {@link MeteredBenchmarkService} clients
+ * generated by the ServiceProcessor, against a {@link RemoteService} that resolves every request at
+ * once, to measure what recording {@link ServiceMetrics} adds to a call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MeteredBenchmark {
+    private BenchmarkService plain;
+    private MeteredBenchmarkService metered;
+    private SearchQuery query;
+    private int id;
+
+    @Setup
+    public void setUp() {
+        RemoteService remoteService = new ResolvingRemoteService();
+        plain = new BenchmarkServiceImpl(remoteService, Functions.identity());
+        metered = new MeteredBenchmarkServiceImpl(remoteService, Functions.identity(), new ServiceMetrics());
+        query = new SearchQuery();
+        query.text = "nibiru";
+        query.page = 3;
+        id = 42;
+    }
+
+    @Benchmark
+    public void plainItem(Blackhole blackhole) {
+        plain.item(id).then(blackhole::consume);
+    }
+
+    @Benchmark
+    public void meteredItem(Blackhole blackhole) {
+        metered.item(id).then(blackhole::consume);
+    }
+
+    @Benchmark
+    public void plainBody(Blackhole blackhole) {
+        plain.post(query).then(blackhole::consume);
+    }
+
+    @Benchmark
+    public void meteredBody(Blackhole blackhole) {
+        metered.post(query).then(blackhole::consume);
+    }
+
+    private static class ResolvingRemoteService implements RemoteService {
+        private final SearchResult result = new SearchResult();
+
+        @Override
+        public HttpRequest.Builder requestBuilder(String path, Object requestDto) {
+            return new HttpRequest.Builder(path, requestDto);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Promise<T, Exception> invoke(HttpRequest request, Class<T> responseClass) {
+            Deferred<T, Exception> deferred = Deferred.defer();
+            deferred.resolve((T) result);
+            return deferred.promise();
+        }
+
+        @Override
+        public <T> Promise<T, Exception> invoke(HttpRequest request, TypeLiteral<T> responseType) {
+            throw new UnsupportedOperationException("Responses are requested with a class");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.Metered;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+
+@Metered
+public interface MeteredBenchmarkService {
+    @GET
+    @Path("item")
+    Promise<SearchResult, Exception> item(int id);
+
+    @POST
+    @Path("search")
+    Promise<SearchResult, Exception> post(SearchQuery query);
+}
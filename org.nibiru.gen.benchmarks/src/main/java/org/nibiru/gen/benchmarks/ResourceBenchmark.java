@@ -0,0 +1,56 @@
+package org.nibiru.gen.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state cost of the {@link BenchmarkResources} accessors, once the holders are loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ResourceBenchmark {
+    private BenchmarkResources resources;
+
+    @Setup
+    public void setUp() {
+        resources = new BenchmarkResourcesImpl();
+        resources.packed();
+        resources.statements();
+        resources.softReference();
+        resources.text();
+    }
+
+    @Benchmark
+    public byte[] packedBytes() {
+        return resources.packed();
+    }
+
+    @Benchmark
+    public byte[] statementsBytes() {
+        return resources.statements();
+    }
+
+    @Benchmark
+    public byte[] softReferenceBytes() {
+        return resources.softReference();
+    }
+
+    @Benchmark
+    public String text() {
+        return resources.text();
+    }
+}
@@ -0,0 +1,90 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.async.core.api.promise.Deferred;
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.LocalExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing of requests to a {@link BenchmarkService} implementation by the router generated by the
+ * ServiceProcessor, with {@link LocalExchange} standing in for the server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RouterBenchmark {
+    private BenchmarkServiceRouter router;
+
+    @Setup
+    public void setUp() {
+        Deferred<SearchResult, Exception> deferred = Deferred.defer();
+        deferred.resolve(new SearchResult());
+        Promise<SearchResult, Exception> result = deferred.promise();
+        router = new BenchmarkServiceRouter(new BenchmarkService() {
+            @Override
+            public Promise<SearchResult, Exception> status() {
+                return result;
+            }
+
+            @Override
+            public Promise<SearchResult, Exception> item(int id) {
+                return result;
+            }
+
+            @Override
+            public Promise<SearchResult, Exception> userItem(String user, int id) {
+                return result;
+            }
+
+            @Override
+            public Promise<SearchResult, Exception> search(SearchQuery query) {
+                return result;
+            }
+
+            @Override
+            public Promise<SearchResult, Exception> post(SearchQuery query) {
+                return result;
+            }
+        });
+    }
+
+    @Benchmark
+    public LocalExchange noParameters() {
+        return route("GET", "/status");
+    }
+
+    @Benchmark
+    public LocalExchange pathParameters() {
+        return route("GET", "/users/nibiru%20user/items/42");
+    }
+
+    @Benchmark
+    public LocalExchange queryBinding() {
+        return route("GET", "/search?text=nibiru&page=3&pageSize=50&descending=true");
+    }
+
+    @Benchmark
+    public LocalExchange notFound() {
+        return route("GET", "/users/nibiru/orders/42");
+    }
+
+    private LocalExchange route(String method, String uri) {
+        LocalExchange exchange = new LocalExchange(method, uri, null);
+        router.route(exchange);
+        return exchange;
+    }
+}
@@ -0,0 +1,28 @@
+package org.nibiru.gen.benchmarks;
+
+/**
+ * Expanded to query parameters by the generated {@link BenchmarkService} methods, from both
+ * public fields and getters.
+ */
+public class SearchQuery {
+    public String text;
+    public int page;
+    private int pageSize;
+    private boolean descending;
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public boolean getDescending() {
+        return descending;
+    }
+
+    public void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+}
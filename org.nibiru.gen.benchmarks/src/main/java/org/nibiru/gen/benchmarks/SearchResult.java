@@ -0,0 +1,5 @@
+package org.nibiru.gen.benchmarks;
+
+public class SearchResult {
+    public int total;
+}
@@ -0,0 +1,77 @@
+package org.nibiru.gen.benchmarks;
+
+import com.google.common.base.Functions;
+import org.nibiru.mobile.core.api.http.HttpRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request building in the {@link BenchmarkService} implementation generated by the ServiceProcessor,
+ * against a {@link StubRemoteService} that sends nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ServiceBenchmark {
+    private StubRemoteService remoteService;
+    private BenchmarkService service;
+    private SearchQuery query;
+    private String user;
+    private int id;
+
+    @Setup
+    public void setUp() {
+        remoteService = new StubRemoteService();
+        service = new BenchmarkServiceImpl(remoteService, Functions.identity());
+        query = new SearchQuery();
+        query.text = "nibiru";
+        query.page = 3;
+        query.setPageSize(50);
+        query.setDescending(true);
+        user = "nibiru user";
+        id = 42;
+    }
+
+    @Benchmark
+    public HttpRequest noParameters() {
+        service.status();
+        return remoteService.getLastRequest();
+    }
+
+    @Benchmark
+    public HttpRequest primitiveParameter() {
+        service.item(id);
+        return remoteService.getLastRequest();
+    }
+
+    @Benchmark
+    public HttpRequest pathParameters() {
+        service.userItem(user, id);
+        return remoteService.getLastRequest();
+    }
+
+    @Benchmark
+    public HttpRequest queryExpansion() {
+        service.search(query);
+        return remoteService.getLastRequest();
+    }
+
+    @Benchmark
+    public HttpRequest body() {
+        service.post(query);
+        return remoteService.getLastRequest();
+    }
+}
@@ -0,0 +1,62 @@
+package org.nibiru.gen.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.nibiru.async.core.api.promise.Deferred;
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.LoadReport;
+import org.nibiru.mobile.core.api.http.HttpRequest;
+import org.nibiru.mobile.core.api.serializer.TypeLiteral;
+import org.nibiru.mobile.core.api.service.RemoteService;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs the load driver generated for {@link BenchmarkService} against a {@link RemoteService} that
+ * answers each request at once, so the report shows the cost of the generated client path.
+ * <p>
+ * Arguments: the path of the JSON report, the concurrency, the target rate in calls per second (0 for
+ * none) and the duration in milliseconds.
+ */
+public class ServiceLoadTest {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 4) {
+            throw new IllegalArgumentException("Usage: ServiceLoadTest <report.json> <concurrency> <rate> <duration>");
+        }
+        File report = new File(args[0]);
+        LoadReport result = new BenchmarkServiceLoadDriver(new AnsweringRemoteService())
+                .loadTest()
+                .concurrency(Integer.parseInt(args[1]))
+                .rate(Double.parseDouble(args[2]))
+                .duration(Long.parseLong(args[3]))
+                .build()
+                .run();
+        System.out.print(result);
+
+        java.nio.file.Files.createDirectories(report.getAbsoluteFile().getParentFile().toPath());
+        Files.write(result.toJson(), report, Charsets.UTF_8);
+        System.out.println("Report written to " + report);
+    }
+
+    private static class AnsweringRemoteService implements RemoteService {
+        @Override
+        public HttpRequest.Builder requestBuilder(String path, Object requestDto) {
+            return new HttpRequest.Builder(path, requestDto);
+        }
+
+        @Override
+        public <T> Promise<T, Exception> invoke(HttpRequest request, Class<T> responseClass) {
+            Deferred<T, Exception> deferred = Deferred.defer();
+            deferred.resolve(null);
+            return deferred.promise();
+        }
+
+        @Override
+        public <T> Promise<T, Exception> invoke(HttpRequest request, TypeLiteral<T> responseType) {
+            Deferred<T, Exception> deferred = Deferred.defer();
+            deferred.resolve(null);
+            return deferred.promise();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.nibiru.gen.benchmarks;
+
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.mobile.core.api.http.HttpRequest;
+import org.nibiru.mobile.core.api.serializer.TypeLiteral;
+import org.nibiru.mobile.core.api.service.RemoteService;
+
+/**
+ * Keeps the last request instead of sending it, so the benchmarks only measure how the
+ * generated services build requests.
+ */
+class StubRemoteService implements RemoteService {
+    private HttpRequest lastRequest;
+
+    @Override
+    public HttpRequest.Builder requestBuilder(String path, Object requestDto) {
+        return new HttpRequest.Builder(path, requestDto);
+    }
+
+    @Override
+    public <T> Promise<T, Exception> invoke(HttpRequest request, Class<T> responseClass) {
+        lastRequest = request;
+        return null;
+    }
+
+    @Override
+    public <T> Promise<T, Exception> invoke(HttpRequest request, TypeLiteral<T> responseType) {
+        lastRequest = request;
+        return null;
+    }
+
+    HttpRequest getLastRequest() {
+        return lastRequest;
+    }
+}
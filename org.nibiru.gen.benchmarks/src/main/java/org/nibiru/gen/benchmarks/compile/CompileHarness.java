@@ -0,0 +1,208 @@
+package org.nibiru.gen.benchmarks.compile;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.nibiru.gen.core.BaseProcessor;
+import org.nibiru.gen.i18n.MessagesProcessor;
+import org.nibiru.gen.resource.ResourceProcessor;
+import org.nibiru.gen.service.ServiceProcessor;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles synthetic inputs of increasing size in memory, with the processors of this project,
+ * and reports what each processor cost. {@link BaseProcessor#THREADS_OPTION} is 1, so processors
+ * generate their sources on the compiler thread, where their allocation is measured, rather than on a
+ * pool whose size depends on the machine.
+ * <p>
+ * Arguments: the path of the JSON report, followed by optional scenario name prefixes to run.
+ */
+public class CompileHarness {
+    private static final int WARMUP_RUNS = 1;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: CompileHarness <report.json> [scenario prefix...]");
+        }
+        File report = new File(args[0]);
+        List<String> filters = ImmutableList.copyOf(args).subList(1, args.length);
+
+        List<ScenarioResult> results = Lists.newArrayList();
+        for (Scenario scenario : Scenarios.all()) {
+            if (filters.isEmpty()
+                    || filters.stream().anyMatch(scenario.getName()::startsWith)) {
+                for (int n = 0; n < WARMUP_RUNS; n++) {
+                    compile(scenario);
+                }
+                ScenarioResult result = compile(scenario);
+                print(result);
+                results.add(result);
+            }
+        }
+
+        java.nio.file.Files.createDirectories(report.getAbsoluteFile().getParentFile().toPath());
+        Files.write(toJson(results), report, Charsets.UTF_8);
+        System.out.println("Report written to " + report);
+    }
+
+    static ScenarioResult compile(Scenario scenario) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("The compile harness must run on a JDK");
+        }
+        File roots = java.nio.file.Files.createTempDirectory("nibiru-gen-harness").toFile();
+        try {
+            for (Map.Entry<String, byte[]> file : scenario.getFiles().entrySet()) {
+                File target = new File(roots, file.getKey());
+                Files.createParentDirs(target);
+                Files.write(file.getValue(), target);
+            }
+
+            ScenarioResult result = new ScenarioResult(scenario.getName());
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            InMemoryFileManager fileManager = new InMemoryFileManager(
+                    compiler.getStandardFileManager(diagnostics, Locale.ROOT, Charsets.UTF_8),
+                    result,
+                    scenario.getSources().keySet());
+
+            List<String> options = Lists.newArrayList("-classpath", System.getProperty("java.class.path"),
+                    "-source", "8",
+                    "-target", "8",
+                    "-Xlint:-options",
+                    "-Anibiru.gen.roots=" + roots.getAbsolutePath(),
+                    // Sources are generated on the compiler thread, whose allocation is the one measured
+                    "-A" + BaseProcessor.THREADS_OPTION + "=1");
+            for (String option : scenario.getOptions()) {
+                options.add("-A" + option);
+            }
+            List<JavaFileObject> sources = scenario.getSources()
+                    .entrySet()
+                    .stream()
+                    .map((e) -> InMemoryFileManager.source(e.getKey(), e.getValue()))
+                    .collect(Collectors.toList());
+
+            JavaCompiler.CompilationTask task = compiler.getTask(null,
+                    fileManager,
+                    diagnostics,
+                    options,
+                    null,
+                    sources);
+            task.setProcessors(processors(result));
+
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans()
+                    .stream()
+                    .filter((pool) -> pool.getType() == MemoryType.HEAP)
+                    .collect(Collectors.toList());
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            long start = System.nanoTime();
+            boolean success = task.call();
+            result.setWallNanos(System.nanoTime() - start);
+            result.setPeakHeapBytes(heapPools.stream()
+                    .mapToLong((pool) -> pool.getPeakUsage().getUsed())
+                    .sum());
+
+            if (!success) {
+                throw new IllegalStateException("Compilation of " + scenario.getName() + " failed: "
+                        + diagnostics.getDiagnostics()
+                        .stream()
+                        .filter((d) -> d.getKind() == Diagnostic.Kind.ERROR)
+                        .map((d) -> d.getMessage(Locale.ROOT))
+                        .limit(10)
+                        .collect(Collectors.joining("\n")));
+            }
+            return result;
+        } finally {
+            deleteRecursively(roots.toPath());
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = java.nio.file.Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder())
+                    .collect(Collectors.toList())) {
+                java.nio.file.Files.delete(path);
+            }
+        }
+    }
+
+    private static List<Processor> processors(ScenarioResult result) {
+        return ImmutableList.of(new TimedProcessor(new MessagesProcessor(), result),
+                new TimedProcessor(new ResourceProcessor(), result),
+                new TimedProcessor(new ServiceProcessor(), result));
+    }
+
+    private static void print(ScenarioResult result) {
+        System.out.printf(Locale.ROOT, "%s: %d ms, peak heap %d MB, %d generated classes (%d KB)%n",
+                result.getName(),
+                TimeUnit.NANOSECONDS.toMillis(result.getWallNanos()),
+                result.getPeakHeapBytes() >> 20,
+                result.getGeneratedClassFiles(),
+                result.getGeneratedClassBytes() >> 10);
+        for (ProcessorStats stats : result.getProcessors()) {
+            if (stats.getSourceFiles() > 0 || stats.getResourceFiles() > 0) {
+                System.out.printf(Locale.ROOT, "  %s: %d ms, %d MB allocated, %d sources (%d KB), %d resources (%d KB)%n",
+                        stats.getName(),
+                        TimeUnit.NANOSECONDS.toMillis(stats.getNanos()),
+                        stats.getAllocatedBytes() >> 20,
+                        stats.getSourceFiles(),
+                        stats.getSourceBytes() >> 10,
+                        stats.getResourceFiles(),
+                        stats.getResourceBytes() >> 10);
+            }
+        }
+    }
+
+    private static String toJson(List<ScenarioResult> results) {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int n = 0; n < results.size(); n++) {
+            ScenarioResult result = results.get(n);
+            json.append("  {\"scenario\": \"").append(result.getName()).append('"')
+                    .append(", \"wallMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(result.getWallNanos()))
+                    .append(", \"peakHeapBytes\": ").append(result.getPeakHeapBytes())
+                    .append(", \"classFiles\": ").append(result.getClassFiles())
+                    .append(", \"classBytes\": ").append(result.getClassBytes())
+                    .append(", \"generatedClassFiles\": ").append(result.getGeneratedClassFiles())
+                    .append(", \"generatedClassBytes\": ").append(result.getGeneratedClassBytes())
+                    .append(", \"processors\": [");
+            int p = 0;
+            for (ProcessorStats stats : result.getProcessors()) {
+                json.append(p++ > 0 ? ", " : "")
+                        .append("{\"processor\": \"").append(stats.getName()).append('"')
+                        .append(", \"millis\": ").append(TimeUnit.NANOSECONDS.toMillis(stats.getNanos()))
+                        .append(", \"rounds\": ").append(stats.getRounds())
+                        .append(", \"allocatedBytes\": ").append(stats.getAllocatedBytes())
+                        .append(", \"sourceFiles\": ").append(stats.getSourceFiles())
+                        .append(", \"sourceBytes\": ").append(stats.getSourceBytes())
+                        .append(", \"resourceFiles\": ").append(stats.getResourceFiles())
+                        .append(", \"resourceBytes\": ").append(stats.getResourceBytes())
+                        .append('}');
+            }
+            json.append("]}")
+                    .append(n < results.size() - 1 ? "," : "")
+                    .append('\n');
+        }
+        return json.append("]\n").toString();
+    }
+}
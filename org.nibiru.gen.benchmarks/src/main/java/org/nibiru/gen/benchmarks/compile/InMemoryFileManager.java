@@ -0,0 +1,112 @@
+package org.nibiru.gen.benchmarks.compile;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nullable;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Keeps every output of the compilation in memory, and records its size in a {@link ScenarioResult}.
+ */
+class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    private final ScenarioResult result;
+    private final Set<String> inputTypes;
+
+    /**
+     * @param inputTypes Qualified names of the input sources, to tell generated classes apart
+     */
+    InMemoryFileManager(StandardJavaFileManager fileManager,
+                        ScenarioResult result,
+                        Set<String> inputTypes) {
+        super(fileManager);
+        this.result = checkNotNull(result);
+        this.inputTypes = checkNotNull(inputTypes);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location,
+                                               String className,
+                                               JavaFileObject.Kind kind,
+                                               FileObject sibling) {
+        return new OutputFile(URI.create("mem:///" + className.replace('.', '/') + kind.extension),
+                kind,
+                className);
+    }
+
+    @Override
+    public FileObject getFileForOutput(Location location,
+                                       String packageName,
+                                       String relativeName,
+                                       FileObject sibling) {
+        return new OutputFile(URI.create("mem:///" + packageName.replace('.', '/') + "/" + relativeName),
+                JavaFileObject.Kind.OTHER,
+                null);
+    }
+
+    static JavaFileObject source(String className, String source) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/')
+                + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+    }
+
+    private class OutputFile extends SimpleJavaFileObject {
+        @Nullable
+        private final String className;
+        private byte[] content = new byte[0];
+
+        private OutputFile(URI uri, Kind kind, @Nullable String className) {
+            super(uri, kind);
+            this.className = className;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    content = toByteArray();
+                    recordOutput(OutputFile.this);
+                }
+            };
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            // Generated sources are read back by the compiler
+            return new String(content, Charsets.UTF_8);
+        }
+    }
+
+    private void recordOutput(OutputFile file) {
+        if (file.getKind() == JavaFileObject.Kind.CLASS) {
+            int nested = file.className.indexOf('$');
+            String topLevel = nested >= 0
+                    ? file.className.substring(0, nested)
+                    : file.className;
+            result.addClass(file.content.length, !inputTypes.contains(topLevel));
+        } else {
+            ProcessorStats current = result.getCurrent();
+            if (current != null) {
+                if (file.getKind() == JavaFileObject.Kind.SOURCE) {
+                    current.addSource(file.content.length);
+                } else {
+                    current.addResource(file.content.length);
+                }
+            }
+        }
+    }
+}
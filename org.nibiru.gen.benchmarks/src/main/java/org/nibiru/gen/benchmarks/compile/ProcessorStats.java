@@ -0,0 +1,76 @@
+package org.nibiru.gen.benchmarks.compile;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * What a processor cost during one compilation.
+ * Time and allocation are measured on the compiler thread, on which the harness makes the processors
+ * generate all their sources.
+ */
+class ProcessorStats {
+    private final String name;
+    private long nanos;
+    private int rounds;
+    private long allocatedBytes;
+    private int sourceFiles;
+    private long sourceBytes;
+    private int resourceFiles;
+    private long resourceBytes;
+
+    ProcessorStats(String name) {
+        this.name = checkNotNull(name);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+
+    int getRounds() {
+        return rounds;
+    }
+
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    int getSourceFiles() {
+        return sourceFiles;
+    }
+
+    long getSourceBytes() {
+        return sourceBytes;
+    }
+
+    int getResourceFiles() {
+        return resourceFiles;
+    }
+
+    long getResourceBytes() {
+        return resourceBytes;
+    }
+
+    void addRound(long nanos, long allocatedBytes) {
+        this.nanos += nanos;
+        this.allocatedBytes += allocatedBytes;
+        rounds++;
+    }
+
+    void addInit(long nanos, long allocatedBytes) {
+        this.nanos += nanos;
+        this.allocatedBytes += allocatedBytes;
+    }
+
+    void addSource(long bytes) {
+        sourceFiles++;
+        sourceBytes += bytes;
+    }
+
+    void addResource(long bytes) {
+        resourceFiles++;
+        resourceBytes += bytes;
+    }
+}
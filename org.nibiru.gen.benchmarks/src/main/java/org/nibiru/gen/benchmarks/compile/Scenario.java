@@ -0,0 +1,51 @@
+package org.nibiru.gen.benchmarks.compile;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A synthetic compilation: sources compiled from memory, files read by the processors, and
+ * processor options.
+ */
+class Scenario {
+    private final String name;
+    private final Map<String, String> sources;
+    private final Map<String, byte[]> files;
+    private final List<String> options;
+
+    /**
+     * @param sources Source code by qualified class name
+     * @param files   File contents by path relative to the source roots, such as "org/foo/Foo.properties"
+     * @param options Processor options, without the -A prefix
+     */
+    Scenario(String name,
+             Map<String, String> sources,
+             Map<String, byte[]> files,
+             List<String> options) {
+        this.name = checkNotNull(name);
+        this.sources = ImmutableMap.copyOf(sources);
+        this.files = ImmutableMap.copyOf(files);
+        this.options = ImmutableList.copyOf(options);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Map<String, String> getSources() {
+        return sources;
+    }
+
+    Map<String, byte[]> getFiles() {
+        return files;
+    }
+
+    List<String> getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,96 @@
+package org.nibiru.gen.benchmarks.compile;
+
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Measurements of a {@link Scenario} compilation, filled in by the {@link TimedProcessor}s and
+ * the {@link InMemoryFileManager} while it runs.
+ */
+class ScenarioResult {
+    private final String name;
+    private final Map<String, ProcessorStats> processors;
+    @Nullable
+    private ProcessorStats current;
+    private long wallNanos;
+    private long peakHeapBytes;
+    private int classFiles;
+    private long classBytes;
+    private int generatedClassFiles;
+    private long generatedClassBytes;
+
+    ScenarioResult(String name) {
+        this.name = checkNotNull(name);
+        this.processors = Maps.newLinkedHashMap();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ProcessorStats processor(String processorName) {
+        return processors.computeIfAbsent(processorName, ProcessorStats::new);
+    }
+
+    Collection<ProcessorStats> getProcessors() {
+        return processors.values();
+    }
+
+    /**
+     * @param current The processor that is running, which files written to the Filer are attributed to
+     */
+    void setCurrent(@Nullable ProcessorStats current) {
+        this.current = current;
+    }
+
+    @Nullable
+    ProcessorStats getCurrent() {
+        return current;
+    }
+
+    long getWallNanos() {
+        return wallNanos;
+    }
+
+    void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    void setPeakHeapBytes(long peakHeapBytes) {
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+    int getClassFiles() {
+        return classFiles;
+    }
+
+    long getClassBytes() {
+        return classBytes;
+    }
+
+    int getGeneratedClassFiles() {
+        return generatedClassFiles;
+    }
+
+    long getGeneratedClassBytes() {
+        return generatedClassBytes;
+    }
+
+    void addClass(long bytes, boolean generated) {
+        classFiles++;
+        classBytes += bytes;
+        if (generated) {
+            generatedClassFiles++;
+            generatedClassBytes += bytes;
+        }
+    }
+}
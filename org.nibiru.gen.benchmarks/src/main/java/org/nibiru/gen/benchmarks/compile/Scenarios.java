@@ -0,0 +1,158 @@
+package org.nibiru.gen.benchmarks.compile;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds the synthetic inputs of the {@link CompileHarness}.
+ */
+final class Scenarios {
+    private static final String PACKAGE = "harness";
+    private static final int MESSAGE_KEYS = 10_000;
+    private static final int RESOURCE_TYPES = 10;
+    private static final int RESOURCE_METHODS_PER_TYPE = 100;
+    private static final int RESOURCE_SIZE = 4 * 1024;
+    private static final int LARGE_RESOURCE_SIZE = 20 * 1024 * 1024;
+    private static final int SERVICES = 500;
+
+    private Scenarios() {
+    }
+
+    static List<Scenario> all() {
+        return ImmutableList.of(messages(false),
+                messages(true),
+                resources(),
+                largeResource(false),
+                largeResource(true),
+                services());
+    }
+
+    /**
+     * One {@code @Messages} interface with {@value #MESSAGE_KEYS} keys and two locales, with the
+     * messages without arguments stored as constants or in a string table.
+     */
+    static Scenario messages(boolean table) {
+        StringBuilder source = new StringBuilder()
+                .append("package " + PACKAGE + ";\n")
+                .append("@org.nibiru.gen.api.i18n.Messages\n")
+                .append("public interface HarnessMessages {\n");
+        StringBuilder base = new StringBuilder();
+        StringBuilder spanish = new StringBuilder();
+        for (int n = 0; n < MESSAGE_KEYS; n++) {
+            int arguments = n % 4;
+            source.append("    String key").append(n).append('(');
+            StringBuilder text = new StringBuilder("Message ").append(n);
+            for (int a = 0; a < arguments; a++) {
+                source.append(a > 0 ? ", " : "").append("String a").append(a);
+                text.append(" {").append(a).append('}');
+            }
+            source.append(");\n");
+            base.append("key").append(n).append('=').append(text).append('\n');
+            spanish.append("key").append(n).append("=Mensaje").append(text.substring("Message".length())).append('\n');
+        }
+        source.append("}\n");
+
+        Map<String, byte[]> files = Maps.newLinkedHashMap();
+        files.put(PACKAGE + "/HarnessMessages.properties", base.toString().getBytes(Charsets.ISO_8859_1));
+        files.put(PACKAGE + "/HarnessMessages_es.properties", spanish.toString().getBytes(Charsets.ISO_8859_1));
+        return new Scenario("messages-" + MESSAGE_KEYS + (table ? "-table" : ""),
+                singleSource("HarnessMessages", source),
+                files,
+                table
+                        ? ImmutableList.of("nibiru.gen.messages.storage=table")
+                        : ImmutableList.of());
+    }
+
+    /**
+     * {@value #RESOURCE_TYPES} interfaces with {@value #RESOURCE_METHODS_PER_TYPE} {@code @Resource}
+     * methods each, every one reading a different file.
+     */
+    static Scenario resources() {
+        Random random = new Random(42);
+        Map<String, String> sources = Maps.newLinkedHashMap();
+        Map<String, byte[]> files = Maps.newLinkedHashMap();
+        for (int t = 0; t < RESOURCE_TYPES; t++) {
+            StringBuilder source = new StringBuilder()
+                    .append("package " + PACKAGE + ";\n")
+                    .append("public interface HarnessResources").append(t).append(" {\n");
+            for (int m = 0; m < RESOURCE_METHODS_PER_TYPE; m++) {
+                String file = "r" + t + "_" + m + ".bin";
+                source.append("    @org.nibiru.gen.api.resource.Resource(\"").append(file).append("\")\n")
+                        .append("    byte[] r").append(m).append("();\n");
+                files.put(PACKAGE + "/" + file, randomBytes(random, RESOURCE_SIZE));
+            }
+            source.append("}\n");
+            sources.put(PACKAGE + ".HarnessResources" + t, source.toString());
+        }
+        return new Scenario("resources-" + RESOURCE_TYPES * RESOURCE_METHODS_PER_TYPE,
+                sources,
+                files,
+                ImmutableList.of());
+    }
+
+    /**
+     * A single 20 MB resource, either streamed to a side file, which is the default at this size,
+     * or embedded in its holder.
+     */
+    static Scenario largeResource(boolean embedded) {
+        StringBuilder source = new StringBuilder()
+                .append("package " + PACKAGE + ";\n")
+                .append("public interface HarnessLargeResource {\n")
+                .append("    @org.nibiru.gen.api.resource.Resource(\"large.bin\")\n")
+                .append("    byte[] large();\n")
+                .append("}\n");
+        Map<String, byte[]> files = Maps.newLinkedHashMap();
+        files.put(PACKAGE + "/large.bin", randomBytes(new Random(42), LARGE_RESOURCE_SIZE));
+        return new Scenario("resource-20mb-" + (embedded ? "embedded" : "streamed"),
+                singleSource("HarnessLargeResource", source),
+                files,
+                embedded
+                        ? ImmutableList.of("nibiru.gen.resource.streamingThreshold=" + Integer.MAX_VALUE)
+                        : ImmutableList.of());
+    }
+
+    /**
+     * {@value #SERVICES} {@code @Path} interfaces, with a query DTO shared by all of them.
+     */
+    static Scenario services() {
+        Map<String, String> sources = Maps.newLinkedHashMap();
+        sources.put(PACKAGE + ".HarnessQuery", "package " + PACKAGE + ";\n"
+                + "public class HarnessQuery {\n"
+                + "    public String text;\n"
+                + "    public int page;\n"
+                + "    public int getPageSize() { return 0; }\n"
+                + "}\n");
+        for (int n = 0; n < SERVICES; n++) {
+            String promise = "org.nibiru.async.core.api.promise.Promise<HarnessQuery, Exception>";
+            sources.put(PACKAGE + ".HarnessService" + n, "package " + PACKAGE + ";\n"
+                    + "import javax.ws.rs.*;\n"
+                    + "public interface HarnessService" + n + " {\n"
+                    + "    @GET @Path(\"get\") " + promise + " get(int id);\n"
+                    + "    @GET @Path(\"search\") " + promise + " search(HarnessQuery query);\n"
+                    + "    @POST @Path(\"create\") " + promise + " create(HarnessQuery query);\n"
+                    + "    @DELETE @Path(\"items/{id}\") " + promise + " delete(@PathParam(\"id\") int id);\n"
+                    + "}\n");
+        }
+        return new Scenario("services-" + SERVICES,
+                sources,
+                Maps.newLinkedHashMap(),
+                ImmutableList.of());
+    }
+
+    private static Map<String, String> singleSource(String simpleName, CharSequence source) {
+        Map<String, String> sources = Maps.newLinkedHashMap();
+        sources.put(PACKAGE + "." + simpleName, source.toString());
+        return sources;
+    }
+
+    private static byte[] randomBytes(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,85 @@
+package org.nibiru.gen.benchmarks.compile;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Measures the time and the compiler thread allocation of a processor.
+ */
+class TimedProcessor implements Processor {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Processor delegate;
+    private final ScenarioResult result;
+    private final ProcessorStats stats;
+
+    TimedProcessor(Processor delegate, ScenarioResult result) {
+        this.delegate = checkNotNull(delegate);
+        this.result = checkNotNull(result);
+        this.stats = result.processor(delegate.getClass().getSimpleName());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return delegate.getSupportedOptions();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return delegate.getSupportedSourceVersion();
+    }
+
+    @Override
+    public void init(ProcessingEnvironment processingEnv) {
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        delegate.init(processingEnv);
+        stats.addInit(System.nanoTime() - start, allocatedBytes() - allocated);
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        result.setCurrent(stats);
+        try {
+            return delegate.process(annotations, roundEnv);
+        } finally {
+            result.setCurrent(null);
+            stats.addRound(System.nanoTime() - start, allocatedBytes() - allocated);
+        }
+    }
+
+    @Override
+    public Iterable<? extends Completion> getCompletions(Element element,
+                                                         AnnotationMirror annotation,
+                                                         ExecutableElement member,
+                                                         String userText) {
+        return delegate.getCompletions(element, annotation, member, userText);
+    }
+
+    private static long allocatedBytes() {
+        // Not every JVM can measure allocation
+        return THREADS instanceof com.sun.management.ThreadMXBean
+                ? ((com.sun.management.ThreadMXBean) THREADS)
+                .getThreadAllocatedBytes(Thread.currentThread().getId())
+                : 0;
+    }
+}
@@ -3,6 +3,7 @@ package org.nibiru.gen.core;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.JavaFile;
@@ -16,24 +17,52 @@ import javax.lang.model.element.*;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
+import java.util.Collection;
 import java.util.Deque;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public abstract class BaseProcessor extends AbstractProcessor {
-    private static final String[] FILE_SEARCH_PREFIXES = {
-            "",
-            "src/main/java/",
-            "src/main/resources/",
-    };
+    /**
+     * Source and resource roots where {@link #findFile(String)} looks for files, separated by the
+     * platform path separator. If absent, the roots are guessed from the class output directory.
+     */
+    public static final String ROOTS_OPTION = "nibiru.gen.roots";
+    /**
+     * Maximum number of threads used to generate code. Defaults to the number of available processors.
+     */
+    public static final String THREADS_OPTION = "nibiru.gen.threads";
+    /**
+     * Directory of the {@link GenerationCache}. If absent, generated sources are not cached.
+     */
+    public static final String CACHE_DIR_OPTION = "nibiru.gen.cacheDir";
+    /**
+     * If true, each processor writes a {@link GenerationReport} to META-INF/nibiru-gen/ in the class
+     * output, and prints a summary as notes.
+     */
+    public static final String REPORT_OPTION = "nibiru.gen.report";
+    private static final String REPORT_DIRECTORY = "META-INF/nibiru-gen/";
+    private static final String CLASS_OUTPUT_PROBE = "nibiru-gen";
     private final Class<? extends Annotation> annotationClass;
+    @Nullable
+    private FileIndex fileIndex;
+    @Nullable
+    private ForkJoinPool pool;
+    @Nullable
+    private GenerationReport report;
 
     protected BaseProcessor(Class<? extends Annotation> annotationClass) {
         this.annotationClass = checkNotNull(annotationClass);
@@ -42,62 +71,208 @@ public abstract class BaseProcessor extends AbstractProcessor {
     @Override
     public boolean process(Set<? extends TypeElement> annotations,
                            RoundEnvironment roundEnv) {
+        if (report == null && Boolean.parseBoolean(option(REPORT_OPTION, "false"))) {
+            report = new GenerationReport(getClass().getSimpleName());
+        }
+        long start = System.nanoTime();
+        Set<? extends Element> elements = roundEnv.getElementsAnnotatedWith(annotationClass);
         try {
-            for (JavaFile javaFile : generate(roundEnv.getElementsAnnotatedWith(annotationClass))) {
+            List<JavaFile> javaFiles = Lists.newArrayList(generate(elements));
+            List<String> sources = generateInParallel(javaFiles,
+                    (javaFile) -> timed(javaFile.packageName + "." + javaFile.typeSpec.name,
+                            javaFile::toString));
 
-                JavaFileObject jfo = processingEnv.getFiler()
-                        .createSourceFile(javaFile.packageName
+            for (int n = 0; n < javaFiles.size(); n++) {
+                JavaFile javaFile = javaFiles.get(n);
+                writeSource(javaFile.packageName
                                 + "."
-                                + javaFile.typeSpec.name);
-
-                try (Writer file = jfo.openWriter()) {
-                    javaFile.writeTo(file);
-                    file.flush();
-                }
+                                + javaFile.typeSpec.name,
+                        sources.get(n),
+                        javaFile.typeSpec.originatingElements);
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            if (report != null) {
+                report.round(elements.size(), System.nanoTime() - start);
+            }
+            if (roundEnv.processingOver()) {
+                if (pool != null) {
+                    pool.shutdown();
+                    pool = null;
+                }
+                if (report != null) {
+                    writeReport(report);
+                    report = null;
+                }
+            }
         }
         return true;
     }
 
-    @Nullable
-    protected File findFile(String path) {
+    private void writeReport(GenerationReport report) {
         try {
-            File base = new File(processingEnv
-                    .getFiler()
-                    .getResource(StandardLocation.CLASS_OUTPUT, "", path)
-                    .toUri());
-
-            // Go up the same number of levesl as the specief path
-            for (String dummy : Splitter.on('/').split(path)) {
-                base = base.getParentFile();
+            // Not tied to any element, so Gradle does a full recompilation while reports are enabled
+            FileObject file = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT,
+                            "",
+                            REPORT_DIRECTORY + getClass().getSimpleName() + ".json");
+            try (Writer writer = file.openWriter()) {
+                writer.write(report.toJson());
             }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (String line : report.summary()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, line);
+        }
+    }
+
+    /**
+     * Runs a task and, if reports are enabled, adds its time to the given element, such as the
+     * type, bundle or file that code is generated from.
+     * Can be called from worker threads.
+     */
+    protected <T> T timed(String element, Supplier<T> task) {
+        GenerationReport report = this.report;
+        if (report == null) {
+            return task.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            report.element(element, System.nanoTime() - start);
+        }
+    }
 
-            File current = findFileWithPrefixes(base, path);
+    /**
+     * Records, if reports are enabled, that an input file has been read.
+     * Can be called from worker threads.
+     */
+    protected void recordInput(String path, long bytes) {
+        GenerationReport report = this.report;
+        if (report != null) {
+            report.input(path, bytes);
+        }
+    }
 
-            while (current == null && base.getParentFile() != null) {
-                base = base.getParentFile();
-                current = findFileWithPrefixes(base, path);
-            }
+    /**
+     * Records, if reports are enabled, a file written without {@link #writeSource}.
+     */
+    protected void recordOutput(String name, long bytes) {
+        GenerationReport report = this.report;
+        if (report != null) {
+            report.output(name, bytes);
+        }
+    }
+
+    /**
+     * Writes a source file that has already been rendered, for instance one restored from the
+     * {@link GenerationCache}.
+     * The Filer is not thread-safe, so this must only be called from the compiler thread.
+     */
+    protected void writeSource(String qualifiedName,
+                               String source,
+                               Collection<? extends Element> originatingElements) {
+        try {
+            JavaFileObject jfo = processingEnv.getFiler()
+                    .createSourceFile(qualifiedName,
+                            originatingElements.toArray(new Element[0]));
 
-            return current;
+            try (Writer file = jfo.openWriter()) {
+                file.write(source);
+                file.flush();
+            }
+            recordOutput(qualifiedName, source.length());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * @return The cache of generated sources, or null if the cache is not enabled
+     */
     @Nullable
-    private File findFileWithPrefixes(File base, String path) {
-        for (String prefix : FILE_SEARCH_PREFIXES) {
-            File file = new File(base, prefix + path);
-            if (file.exists()) {
-                return file;
+    protected GenerationCache cache() {
+        String directory = option(CACHE_DIR_OPTION, null);
+        return directory != null
+                ? new GenerationCache(new File(directory))
+                : null;
+    }
+
+    /**
+     * Applies a task to every input on a bounded fork-join pool, and returns the results in
+     * the same order as the inputs, so the output does not depend on scheduling.
+     * Tasks must not use the javax.lang.model API or the Filer, which are not thread-safe.
+     */
+    protected <T, R> List<R> generateInParallel(Collection<T> inputs,
+                                                Function<? super T, ? extends R> task) {
+        List<R> results = Lists.newArrayListWithCapacity(inputs.size());
+        int threads = Integer.parseInt(option(THREADS_OPTION,
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        if (threads <= 1 || inputs.size() <= 1) {
+            for (T input : inputs) {
+                results.add(task.apply(input));
+            }
+        } else {
+            if (pool == null) {
+                pool = new ForkJoinPool(threads);
             }
+            List<ForkJoinTask<? extends R>> tasks = Lists.newArrayListWithCapacity(inputs.size());
+            for (T input : inputs) {
+                tasks.add(pool.submit(() -> task.apply(input)));
+            }
+            for (ForkJoinTask<? extends R> forkJoinTask : tasks) {
+                results.add(forkJoinTask.join());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return ImmutableSet.<String>builder()
+                .addAll(super.getSupportedOptions())
+                .add(ROOTS_OPTION)
+                .add(THREADS_OPTION)
+                .add(CACHE_DIR_OPTION)
+                .add(REPORT_OPTION)
+                .build();
+    }
+
+    @Nullable
+    protected File findFile(String path) {
+        if (fileIndex == null) {
+            fileIndex = FileIndex.get(processingEnv.getElementUtils(),
+                    option(ROOTS_OPTION, null),
+                    this::classOutput);
+        }
+        File file = fileIndex.find(path);
+        GenerationReport report = this.report;
+        if (report != null) {
+            report.probe(path, file != null);
+        }
+        return file;
+    }
 
+    private File classOutput() {
+        try {
+            return new File(processingEnv
+                    .getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", CLASS_OUTPUT_PROBE)
+                    .toUri())
+                    .getParentFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        return null;
+    }
 
+    protected String option(String name, String defaultValue) {
+        String value = processingEnv.getOptions().get(name);
+        return value != null
+                ? value
+                : defaultValue;
     }
 
     protected void log(String message) {
@@ -108,9 +283,12 @@ public abstract class BaseProcessor extends AbstractProcessor {
     protected abstract Iterable<JavaFile> generate(Set<? extends Element> elements);
 
     protected static boolean isString(TypeMirror type) {
+        return isType(type, String.class);
+    }
+
+    protected static boolean isType(TypeMirror type, Class<?> clazz) {
         return type instanceof DeclaredType
-                && String.class
-                .getName()
+                && clazz.getName()
                 .equals(type.toString());
     }
 
@@ -132,7 +310,8 @@ public abstract class BaseProcessor extends AbstractProcessor {
                                             TypeSpec.Builder typeBuilder) {
         return JavaFile.builder(element.getEnclosingElement()
                         .toString(),
-                typeBuilder.build())
+                typeBuilder.addOriginatingElement(element)
+                        .build())
                 .build();
     }
 
@@ -0,0 +1,129 @@
+package org.nibiru.gen.core;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Resolves relative paths, such as "org/nibiru/Foo.properties", against the source and
+ * resource roots of a compilation.
+ * When the roots are configured, they are indexed once and every lookup is a single map hit.
+ * Otherwise the roots are guessed from the class output directory, and lookups are memoized.
+ * One index is shared by all the processors of the same compilation.
+ */
+class FileIndex {
+    private static final String[] FILE_SEARCH_PREFIXES = {
+            "",
+            "src/main/java/",
+            "src/main/resources/",
+    };
+    private static final Map<Object, FileIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final List<File> roots;
+    @Nullable
+    private final Map<String, File> index;
+    private final ConcurrentMap<String, Optional<File>> lookups;
+
+    private FileIndex(List<File> roots, boolean indexed) {
+        this.roots = checkNotNull(roots);
+        this.index = indexed
+                ? buildIndex(roots)
+                : null;
+        this.lookups = Maps.newConcurrentMap();
+    }
+
+    /**
+     * @param compilation An object that lives as long as the compilation, used as key of the shared index
+     * @param roots       The configured roots, separated by {@link File#pathSeparator}, or null if not configured
+     * @param classOutput Supplies the class output directory, used to guess the roots if they are not configured
+     */
+    static FileIndex get(Object compilation,
+                         @Nullable String roots,
+                         Supplier<File> classOutput) {
+        synchronized (INDEXES) {
+            return INDEXES.computeIfAbsent(compilation,
+                    (key) -> roots != null
+                            ? new FileIndex(configuredRoots(roots), true)
+                            : new FileIndex(guessedRoots(classOutput.get()), false));
+        }
+    }
+
+    @Nullable
+    File find(String path) {
+        if (index != null) {
+            return index.get(path);
+        }
+        return lookups.computeIfAbsent(path, this::probe)
+                .orElse(null);
+    }
+
+    private Optional<File> probe(String path) {
+        for (File root : roots) {
+            File file = new File(root, path);
+            if (file.exists()) {
+                return Optional.of(file);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static List<File> configuredRoots(String roots) {
+        ImmutableList.Builder<File> files = ImmutableList.builder();
+        for (String root : Splitter.on(File.pathSeparatorChar)
+                .omitEmptyStrings()
+                .trimResults()
+                .split(roots)) {
+            files.add(new File(root));
+        }
+        return files.build();
+    }
+
+    private static List<File> guessedRoots(File classOutput) {
+        ImmutableList.Builder<File> files = ImmutableList.builder();
+        for (File base = classOutput; base != null; base = base.getParentFile()) {
+            for (String prefix : FILE_SEARCH_PREFIXES) {
+                File root = new File(base, prefix);
+                if (root.isDirectory()) {
+                    files.add(root);
+                }
+            }
+        }
+        return files.build();
+    }
+
+    private static Map<String, File> buildIndex(List<File> roots) {
+        Map<String, File> index = Maps.newHashMap();
+        for (File root : roots) {
+            if (root.isDirectory()) {
+                Path rootPath = root.toPath();
+                try (Stream<Path> files = Files.walk(rootPath)) {
+                    files.filter(Files::isRegularFile)
+                            .forEach((file) -> index.putIfAbsent(rootPath.relativize(file)
+                                            .toString()
+                                            .replace(File.separatorChar, '/'),
+                                    file.toFile()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return index;
+    }
+}
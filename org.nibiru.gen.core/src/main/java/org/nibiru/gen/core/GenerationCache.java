@@ -0,0 +1,69 @@
+package org.nibiru.gen.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * On-disk cache of generated sources, shared across builds.
+ * Entries are keyed by a hash of everything the generated source depends on, usually the input
+ * bytes and the processor options, so an entry never needs to be invalidated.
+ */
+public class GenerationCache {
+    private final File directory;
+
+    GenerationCache(File directory) {
+        this.directory = checkNotNull(directory);
+    }
+
+    /**
+     * Starts a key. Callers must add every input of the generated source, and should add a
+     * version that changes whenever the generated code changes for the same inputs.
+     */
+    public static Hasher keyBuilder() {
+        return Hashing.sha256().newHasher();
+    }
+
+    @Nullable
+    public String get(String key) {
+        File entry = new File(directory, key);
+        try {
+            return entry.isFile()
+                    ? Files.toString(entry, Charsets.UTF_8)
+                    : null;
+        } catch (IOException e) {
+            // A broken entry is just a miss
+            return null;
+        }
+    }
+
+    public void put(String key, String source) {
+        try {
+            java.nio.file.Files.createDirectories(directory.toPath());
+            // Written to a temporary file and moved, so concurrent builds never read partial entries
+            File temp = File.createTempFile(key, ".tmp", directory);
+            Files.write(source, temp, Charsets.UTF_8);
+            try {
+                java.nio.file.Files.move(temp.toPath(),
+                        new File(directory, key).toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                java.nio.file.Files.move(temp.toPath(),
+                        new File(directory, key).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.nibiru.gen.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * What a processor did during a compilation: rounds, time spent on each element, files probed
+ * and read, and sources and resources written.
+ * Elements are whatever the processor generates code from, such as a type, a bundle or a resource file.
+ * Can be updated from worker threads.
+ */
+class GenerationReport {
+    private static final int SUMMARY_ENTRIES = 5;
+
+    private final String processor;
+    private final List<Round> rounds;
+    private final ConcurrentMap<String, Long> elementNanos;
+    private final ConcurrentMap<String, Boolean> probes;
+    private final ConcurrentMap<String, Long> inputs;
+    private final ConcurrentMap<String, Long> outputs;
+
+    GenerationReport(String processor) {
+        this.processor = checkNotNull(processor);
+        this.rounds = Lists.newArrayList();
+        this.elementNanos = Maps.newConcurrentMap();
+        this.probes = Maps.newConcurrentMap();
+        this.inputs = Maps.newConcurrentMap();
+        this.outputs = Maps.newConcurrentMap();
+    }
+
+    synchronized void round(int elements, long nanos) {
+        rounds.add(new Round(elements, nanos));
+    }
+
+    void element(String element, long nanos) {
+        elementNanos.merge(element, nanos, Long::sum);
+    }
+
+    void probe(String path, boolean found) {
+        probes.put(path, found);
+    }
+
+    void input(String path, long bytes) {
+        inputs.merge(path, bytes, Long::sum);
+    }
+
+    void output(String name, long bytes) {
+        outputs.merge(name, bytes, Long::sum);
+    }
+
+    synchronized String toJson() {
+        StringBuilder json = new StringBuilder()
+                .append("{\n  \"processor\": ").append(quote(processor))
+                .append(",\n  \"rounds\": [");
+        for (int n = 0; n < rounds.size(); n++) {
+            json.append(n > 0 ? ", " : "")
+                    .append("{\"elements\": ").append(rounds.get(n).elements)
+                    .append(", \"nanos\": ").append(rounds.get(n).nanos)
+                    .append('}');
+        }
+        json.append("],\n  \"elements\": ");
+        appendObject(json, sorted(elementNanos));
+        json.append(",\n  \"probes\": ");
+        appendObject(json, sorted(probes));
+        json.append(",\n  \"inputs\": ");
+        appendObject(json, sorted(inputs));
+        json.append(",\n  \"outputs\": ");
+        appendObject(json, sorted(outputs));
+        return json.append("\n}\n").toString();
+    }
+
+    synchronized List<String> summary() {
+        long nanos = rounds.stream()
+                .mapToLong((r) -> r.nanos)
+                .sum();
+        List<String> lines = Lists.newArrayList(String.format(Locale.ROOT,
+                "%s: %d rounds in %d ms, %d files probed (%d found), %d inputs read (%d KB), %d outputs written (%d KB)",
+                processor,
+                rounds.size(),
+                TimeUnit.NANOSECONDS.toMillis(nanos),
+                probes.size(),
+                probes.values().stream().filter(Boolean::booleanValue).count(),
+                inputs.size(),
+                total(inputs) >> 10,
+                outputs.size(),
+                total(outputs) >> 10));
+        for (Map.Entry<String, Long> entry : top(elementNanos)) {
+            lines.add(String.format(Locale.ROOT, "%s: slowest %s (%d ms)",
+                    processor,
+                    entry.getKey(),
+                    TimeUnit.NANOSECONDS.toMillis(entry.getValue())));
+        }
+        for (Map.Entry<String, Long> entry : top(inputs)) {
+            lines.add(String.format(Locale.ROOT, "%s: largest input %s (%d KB)",
+                    processor,
+                    entry.getKey(),
+                    entry.getValue() >> 10));
+        }
+        return lines;
+    }
+
+    private static long total(Map<String, Long> values) {
+        return values.values()
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    private static List<Map.Entry<String, Long>> top(Map<String, Long> values) {
+        return values.entrySet()
+                .stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(SUMMARY_ENTRIES)
+                .collect(Collectors.toList());
+    }
+
+    private static <V> List<Map.Entry<String, V>> sorted(Map<String, V> values) {
+        return values.entrySet()
+                .stream()
+                .sorted(Comparator.comparing(Map.Entry::getKey))
+                .collect(Collectors.toList());
+    }
+
+    private static void appendObject(StringBuilder json, List<? extends Map.Entry<String, ?>> entries) {
+        json.append('{');
+        for (int n = 0; n < entries.size(); n++) {
+            json.append(n > 0 ? ",\n    " : "\n    ")
+                    .append(quote(entries.get(n).getKey()))
+                    .append(": ")
+                    .append(entries.get(n).getValue());
+        }
+        json.append(entries.isEmpty() ? "}" : "\n  }");
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int n = 0; n < value.length(); n++) {
+            char c = value.charAt(n);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static class Round {
+        private final int elements;
+        private final long nanos;
+
+        private Round(int elements, long nanos) {
+            this.elements = elements;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.nibiru.gen.core;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Helpers for embedding large data as Java string literals.
+ */
+public final class Literals {
+    /**
+     * Maximum length, in modified UTF-8 bytes, of a single class file string constant.
+     */
+    public static final int MAX_CONSTANT_LENGTH = 65535;
+    /**
+     * Maximum number of chars of a string constant accepted by javac, which is one less than the
+     * class file limit.
+     */
+    private static final int MAX_CONSTANT_CHARS = 65534;
+
+    private Literals() {
+    }
+
+    /**
+     * Maps each byte to the char with the same unsigned value, so the result can be
+     * copied back with {@link String#getBytes(int, int, byte[], int)}.
+     */
+    public static String latin1(byte[] data, int from, int to) {
+        char[] chars = new char[to - from];
+        for (int n = from; n < to; n++) {
+            chars[n - from] = (char) (data[n] & 0xff);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Splits a string in chunks that fit in a class file string constant.
+     */
+    public static List<String> split(String value) {
+        checkNotNull(value);
+        List<String> chunks = Lists.newArrayList();
+        int start = 0;
+        int size = 0;
+        for (int n = 0; n < value.length(); n++) {
+            int charSize = constantSize(value.charAt(n));
+            if (size + charSize > MAX_CONSTANT_LENGTH
+                    || n - start == MAX_CONSTANT_CHARS) {
+                chunks.add(value.substring(start, n));
+                start = n;
+                size = 0;
+            }
+            size += charSize;
+        }
+        if (start < value.length() || chunks.isEmpty()) {
+            chunks.add(value.substring(start));
+        }
+        return chunks;
+    }
+
+    /**
+     * Builds a quoted Java string literal that only contains printable ASCII characters,
+     * so the generated source does not depend on the compiler encoding.
+     */
+    public static String literal(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int n = 0; n < value.length(); n++) {
+            char c = value.charAt(n);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c >= 0x20 && c < 0x7f) {
+                sb.append(c);
+            } else if (c < 0x100) {
+                // Always three digits, so a following digit is never taken as part of the escape
+                sb.append('\\')
+                        .append((char) ('0' + (c >> 6)))
+                        .append((char) ('0' + ((c >> 3) & 7)))
+                        .append((char) ('0' + (c & 7)));
+            } else {
+                sb.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
+    private static int constantSize(char c) {
+        if (c >= 0x01 && c <= 0x7f) {
+            return 1;
+        } else if (c <= 0x7ff) {
+            return 2;
+        } else {
+            return 3;
+        }
+    }
+}
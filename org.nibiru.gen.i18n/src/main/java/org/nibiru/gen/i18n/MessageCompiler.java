@@ -0,0 +1,751 @@
+package org.nibiru.gen.i18n;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import org.nibiru.gen.core.Literals;
+
+import javax.annotation.Nullable;
+import javax.lang.model.element.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ChoiceFormat;
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compiles {@link java.text.MessageFormat} patterns into the methods of a generated messages class,
+ * so the pattern is parsed once, at build time.
+ * Messages without arguments become constants, or entries of a {@link StringTable}. The others append their parts to a pre-sized
+ * StringBuilder, and format numbers and dates with formats that are created once per thread
+ * and locale, since each generated class is for a single locale.
+ * The output is the same as {@code new MessageFormat(pattern, locale).format(arguments)}, except
+ * that arguments beyond the method parameters are written as ???n???.
+ * Patterns can also have plural and select arguments, with the ICU syntax, such as
+ * {@code {0,plural,=0{no items} one{# item} other{# items}}}. The CLDR rules of the plural categories
+ * are compiled into a method of the class, and each argument into branches.
+ * <p>
+ * Messages of the {@link org.nibiru.gen.api.i18n.Messages.Syntax#PLAIN} syntax are only split at their
+ * {n} arguments, which are appended as they are, so the output is the same as concatenating the text
+ * and the arguments.
+ */
+class MessageCompiler {
+    /**
+     * Expected length of a formatted argument, to size the builders.
+     */
+    private static final int ARGUMENT_LENGTH = 16;
+    private static final ClassName STRING = ClassName.get(String.class);
+    private static final Set<TypeName> NUMBER_TYPES = ImmutableSet.of(ClassName.get(Number.class),
+            ClassName.get(BigDecimal.class),
+            ClassName.get(BigInteger.class),
+            ClassName.get(AtomicInteger.class),
+            ClassName.get(AtomicLong.class));
+    private static final Set<TypeName> INTEGER_TYPES = ImmutableSet.of(TypeName.BYTE.box(),
+            TypeName.SHORT.box(),
+            TypeName.INT.box(),
+            TypeName.LONG.box(),
+            ClassName.get(AtomicInteger.class),
+            ClassName.get(AtomicLong.class));
+    private static final String PLURAL_CATEGORY = "pluralCategory";
+    private static final Pattern SELECTOR = Pattern.compile("[\\w-]+");
+    private static final Set<TypeName> DATE_TYPES = ImmutableSet.of(ClassName.get(Date.class),
+            ClassName.get("java.sql", "Date"),
+            ClassName.get("java.sql", "Time"),
+            ClassName.get("java.sql", "Timestamp"));
+
+    private enum ArgumentKind {
+        STRING,
+        NUMBER,
+        DATE,
+        /**
+         * Appended as is, like booleans and chars.
+         */
+        OTHER,
+        /**
+         * Formatted depending on its runtime type.
+         */
+        OBJECT
+    }
+
+    private final Locale locale;
+    private final boolean plain;
+    @Nullable
+    private final PluralRules pluralRules;
+    @Nullable
+    private final StringTable.LocaleTexts tableLocale;
+    private final TypeSpec.Builder typeBuilder;
+    private final NameAllocator fieldNames;
+    private final Map<String, String> formats;
+    @Nullable
+    private String localeField;
+    private boolean integerCategory;
+    private boolean fractionCategory;
+
+    /**
+     * @param pluralRules The rules of the plural categories, or null if the language has none, so plural
+     *                    arguments can only have =n and other selectors
+     * @param plain       Whether the messages have the plain syntax rather than the MessageFormat one
+     * @param tableLocale The texts of the bundle in the table of the messages without arguments, or null
+     *                    to store them as constants
+     */
+    MessageCompiler(Locale locale,
+                    boolean plain,
+                    @Nullable PluralRules pluralRules,
+                    @Nullable StringTable.LocaleTexts tableLocale,
+                    TypeSpec.Builder typeBuilder) {
+        this.locale = checkNotNull(locale);
+        this.plain = plain;
+        this.pluralRules = pluralRules;
+        this.tableLocale = tableLocale;
+        this.typeBuilder = checkNotNull(typeBuilder);
+        this.fieldNames = new NameAllocator();
+        this.formats = Maps.newHashMap();
+    }
+
+    /**
+     * Adds the body of a message method.
+     *
+     * @throws IllegalArgumentException If the pattern is not valid, or an argument can not be formatted as requested
+     */
+    MethodSpec compile(MethodSpec method, String pattern) {
+        List<MessagePattern.Part> parts = parts(pattern, plain);
+        MethodSpec.Builder builder = method.toBuilder();
+
+        String constant = constantText(parts, method);
+        if (constant != null && tableLocale != null) {
+            return builder.addStatement("return $T.get($L, $L)", tableLocale.getTable().getClassName(),
+                    tableLocale.getIndex(), tableLocale.slot(constant))
+                    .build();
+        } else if (constant != null) {
+            String field = fieldNames.newName(CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, method.name));
+            typeBuilder.addField(FieldSpec.builder(String.class, field,
+                    Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$L", Literals.literal(constant))
+                    .build());
+            return builder.addStatement("return $N", field)
+                    .build();
+        }
+
+        NameAllocator locals = new NameAllocator();
+        for (ParameterSpec parameter : method.parameters) {
+            locals.newName(parameter.name, parameter);
+        }
+        int capacity = capacity(parts);
+        if (parts.stream().noneMatch(this::isBranch)) {
+            List<CodeBlock> appends = Lists.newArrayList();
+            addAppends(appends, parts, method, null);
+            return builder.addStatement("return new $T($L)$L.toString()",
+                    StringBuilder.class,
+                    capacity,
+                    CodeBlock.join(appends, ""))
+                    .build();
+        }
+
+        String sb = locals.newName("sb");
+        CodeBlock.Builder code = CodeBlock.builder()
+                .addStatement("$T $N = new $T($L)", StringBuilder.class, sb, StringBuilder.class, capacity);
+        addStatements(code, sb, parts, method, locals, null);
+        return builder.addCode(code.build())
+                .addStatement("return $N.toString()", sb)
+                .build();
+    }
+
+    /**
+     * @return The message if it has no arguments, otherwise null
+     * @throws IllegalArgumentException If the pattern is not valid
+     */
+    @Nullable
+    static String constantText(MethodSpec method, String pattern, boolean plain) {
+        return constantText(parts(pattern, plain), method);
+    }
+
+    private static List<MessagePattern.Part> parts(String pattern, boolean plain) {
+        return plain
+                ? MessagePattern.parsePlain(pattern)
+                : MessagePattern.parse(pattern);
+    }
+
+    @Nullable
+    private static String constantText(List<MessagePattern.Part> parts, MethodSpec method) {
+        StringBuilder text = new StringBuilder();
+        for (MessagePattern.Part part : parts) {
+            if (part instanceof MessagePattern.Text) {
+                text.append(((MessagePattern.Text) part).getText());
+            } else if (parameter((MessagePattern.Argument) part, method) == null) {
+                text.append(missing((MessagePattern.Argument) part));
+            } else {
+                return null;
+            }
+        }
+        return text.toString();
+    }
+
+    private int capacity(List<MessagePattern.Part> parts) {
+        int capacity = 0;
+        for (MessagePattern.Part part : parts) {
+            capacity += part instanceof MessagePattern.Text
+                    ? ((MessagePattern.Text) part).getText().length()
+                    : ARGUMENT_LENGTH;
+        }
+        return capacity;
+    }
+
+    /**
+     * @return Whether the part is an argument that chooses between messages, so it needs statements
+     */
+    private boolean isBranch(MessagePattern.Part part) {
+        if (part instanceof MessagePattern.Argument) {
+            String type = ((MessagePattern.Argument) part).getType();
+            return type.equals("choice") || type.equals("plural") || type.equals("select");
+        }
+        return false;
+    }
+
+    /**
+     * @param pound What # is written as, inside the branches of a plural argument, otherwise null
+     */
+    private void addStatements(CodeBlock.Builder code,
+                               String sb,
+                               List<MessagePattern.Part> parts,
+                               MethodSpec method,
+                               NameAllocator locals,
+                               @Nullable CodeBlock pound) {
+        List<MessagePattern.Part> pending = Lists.newArrayList();
+        for (MessagePattern.Part part : parts) {
+            if (isBranch(part)) {
+                flush(code, sb, pending, method, pound);
+                MessagePattern.Argument argument = (MessagePattern.Argument) part;
+                switch (argument.getType()) {
+                    case "choice":
+                        addChoice(code, sb, argument, method, locals, pound);
+                        break;
+                    case "plural":
+                        addPlural(code, sb, argument, method, locals);
+                        break;
+                    default:
+                        addSelect(code, sb, argument, method, locals, pound);
+                }
+            } else {
+                pending.add(part);
+            }
+        }
+        flush(code, sb, pending, method, pound);
+    }
+
+    private void flush(CodeBlock.Builder code,
+                       String sb,
+                       List<MessagePattern.Part> pending,
+                       MethodSpec method,
+                       @Nullable CodeBlock pound) {
+        if (!pending.isEmpty()) {
+            List<CodeBlock> appends = Lists.newArrayList();
+            addAppends(appends, pending, method, pound);
+            code.addStatement("$N$L", sb, CodeBlock.join(appends, ""));
+            pending.clear();
+        }
+    }
+
+    private void addAppends(List<CodeBlock> appends,
+                            List<MessagePattern.Part> parts,
+                            MethodSpec method,
+                            @Nullable CodeBlock pound) {
+        StringBuilder text = new StringBuilder();
+        for (MessagePattern.Part part : parts) {
+            if (part instanceof MessagePattern.Text) {
+                text.append(((MessagePattern.Text) part).getText());
+            } else if (part instanceof MessagePattern.Pound) {
+                addText(appends, text);
+                appends.add(CodeBlock.of(".append($L)", checkNotNull(pound)));
+            } else {
+                MessagePattern.Argument argument = (MessagePattern.Argument) part;
+                ParameterSpec parameter = parameter(argument, method);
+                if (parameter == null) {
+                    text.append(missing(argument));
+                } else {
+                    addText(appends, text);
+                    appends.add(CodeBlock.of(".append($L)", format(argument, parameter)));
+                }
+            }
+        }
+        addText(appends, text);
+    }
+
+    private static void addText(List<CodeBlock> appends, StringBuilder text) {
+        if (text.length() == 1 && isPlainChar(text.charAt(0))) {
+            appends.add(CodeBlock.of(".append('$L')", text.charAt(0)));
+        } else if (text.length() > 0) {
+            appends.add(CodeBlock.of(".append($L)", Literals.literal(text.toString())));
+        }
+        text.setLength(0);
+    }
+
+    private static boolean isPlainChar(char c) {
+        return c >= 0x20 && c < 0x7f && c != '\'' && c != '\\';
+    }
+
+    /**
+     * Chooses the text like {@link ChoiceFormat#format(double)}: the last limit the number is
+     * greater than or equal to, or the first one. Texts with arguments are compiled as patterns,
+     * as {@link java.text.MessageFormat} does.
+     */
+    private void addChoice(CodeBlock.Builder code,
+                           String sb,
+                           MessagePattern.Argument argument,
+                           MethodSpec method,
+                           NameAllocator locals,
+                           @Nullable CodeBlock pound) {
+        ParameterSpec parameter = parameter(argument, method);
+        if (parameter == null) {
+            code.addStatement("$N.append($L)", sb, Literals.literal(missing(argument)));
+            return;
+        }
+        ArgumentKind kind = kind(parameter.type);
+        checkArgument(kind == ArgumentKind.NUMBER || kind == ArgumentKind.OBJECT, argument, parameter, "a number");
+        ChoiceFormat choice = new ChoiceFormat(argument.getStyle());
+        double[] limits = choice.getLimits();
+        Object[] texts = choice.getFormats();
+        if (limits.length == 0) {
+            return;
+        }
+
+        String value;
+        if (parameter.type.isPrimitive()) {
+            value = parameter.name;
+        } else {
+            code.beginControlFlow("if ($N == null)", parameter)
+                    .addStatement("$N.append($S)", sb, "null")
+                    .nextControlFlow("else");
+            value = locals.newName("value");
+            code.addStatement("double $N = (($T) $N).doubleValue()", value, Number.class, parameter);
+        }
+        for (int n = limits.length - 1; n >= 0; n--) {
+            if (n == limits.length - 1 && n > 0) {
+                code.beginControlFlow("if ($L)", limit(value, limits[n]));
+            } else if (n > 0) {
+                code.nextControlFlow("else if ($L)", limit(value, limits[n]));
+            } else if (limits.length > 1) {
+                code.nextControlFlow("else");
+            }
+            String text = (String) texts[n];
+            if (text.indexOf('{') >= 0) {
+                addStatements(code, sb, MessagePattern.parse(text, pound != null), method, locals, pound);
+            } else if (!text.isEmpty()) {
+                code.addStatement("$N.append($L)", sb, Literals.literal(text));
+            }
+        }
+        if (limits.length > 1) {
+            code.endControlFlow();
+        }
+        if (!parameter.type.isPrimitive()) {
+            code.endControlFlow();
+        }
+    }
+
+    private static CodeBlock limit(String value, double limit) {
+        if (Double.isInfinite(limit)) {
+            return CodeBlock.of("$N >= $T.$L", value, Double.class,
+                    limit > 0 ? "POSITIVE_INFINITY" : "NEGATIVE_INFINITY");
+        }
+        // Limits written as "1<" are stored as the next double, so they read better as strict comparisons
+        double previous = Math.nextDown(limit);
+        return Double.toString(previous).length() < Double.toString(limit).length()
+                ? CodeBlock.of("$N > $L", value, Double.toString(previous))
+                : CodeBlock.of("$N >= $L", value, Double.toString(limit));
+    }
+
+    /**
+     * Chooses the message of an exact value, such as =0, if there is one, or else the message of the
+     * plural category of the value minus the offset, like ICU does. Categories the language does not
+     * have are never chosen.
+     */
+    private void addPlural(CodeBlock.Builder code,
+                           String sb,
+                           MessagePattern.Argument argument,
+                           MethodSpec method,
+                           NameAllocator locals) {
+        ParameterSpec parameter = parameter(argument, method);
+        if (parameter == null) {
+            code.addStatement("$N.append($L)", sb, Literals.literal(missing(argument)));
+            return;
+        }
+        ArgumentKind kind = kind(parameter.type);
+        checkArgument(kind == ArgumentKind.NUMBER || kind == ArgumentKind.OBJECT, argument, parameter, "a number");
+        MessagePattern.Branches branches = MessagePattern.parseBranches(argument.getStyle(), true);
+        boolean integer = INTEGER_TYPES.contains(parameter.type.isPrimitive()
+                ? parameter.type.box()
+                : parameter.type);
+
+        Map<BigDecimal, String> exact = Maps.newLinkedHashMap();
+        Map<String, String> categories = Maps.newLinkedHashMap();
+        for (Map.Entry<String, String> branch : branches.getMessages().entrySet()) {
+            String selector = branch.getKey();
+            if (selector.startsWith("=")) {
+                try {
+                    BigDecimal value = new BigDecimal(selector.substring(1));
+                    // Integers are never equal to values with fraction digits
+                    if (!integer || value.stripTrailingZeros().scale() <= 0) {
+                        exact.put(value, branch.getValue());
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid plural selector: " + selector);
+                }
+            } else if (!PluralRules.CATEGORIES.contains(selector)) {
+                throw new IllegalArgumentException("Unknown plural category: " + selector);
+            } else if (pluralRules == null && !selector.equals(PluralRules.OTHER)) {
+                throw new IllegalArgumentException("No plural rules for " + locale
+                        + ", only =n and other selectors can be used");
+            } else if (pluralRules == null || pluralRules.hasCategory(selector)) {
+                categories.put(selector, branch.getValue());
+            }
+        }
+
+        String value;
+        if (parameter.type.isPrimitive()) {
+            value = parameter.name;
+        } else {
+            code.beginControlFlow("if ($N == null)", parameter)
+                    .addStatement("$N.append($S)", sb, "null")
+                    .nextControlFlow("else");
+            value = locals.newName("value");
+            code.addStatement("$L $N = (($T) $N).$L()",
+                    integer ? "long" : "double", value, Number.class, parameter,
+                    integer ? "longValue" : "doubleValue");
+        }
+        CodeBlock number = branches.getOffset() == 0
+                ? CodeBlock.of("$N", value)
+                : CodeBlock.of("$N - $L", value, branches.getOffset());
+        CodeBlock pound = CodeBlock.of("$N.get().format($L)", numberFormat(""), number);
+
+        boolean first = true;
+        for (Map.Entry<BigDecimal, String> branch : exact.entrySet()) {
+            CodeBlock test = CodeBlock.of("$N == $L", value, exactLiteral(branch.getKey(), integer));
+            if (first) {
+                code.beginControlFlow("if ($L)", test);
+                first = false;
+            } else {
+                code.nextControlFlow("else if ($L)", test);
+            }
+            addStatements(code, sb, MessagePattern.parse(branch.getValue(), true), method, locals, pound);
+        }
+        if (!exact.isEmpty()) {
+            code.nextControlFlow("else");
+        }
+        String other = categories.remove(PluralRules.OTHER);
+        if (categories.isEmpty()) {
+            addStatements(code, sb, MessagePattern.parse(other, true), method, locals, pound);
+        } else {
+            code.beginControlFlow("switch ($N($T.abs($L)))", pluralCategory(integer), Math.class, number);
+            for (Map.Entry<String, String> branch : categories.entrySet()) {
+                code.add("case $L: // $L\n$>", PluralRules.CATEGORIES.indexOf(branch.getKey()), branch.getKey());
+                addStatements(code, sb, MessagePattern.parse(branch.getValue(), true), method, locals, pound);
+                code.addStatement("break")
+                        .add("$<");
+            }
+            code.add("default:\n$>");
+            addStatements(code, sb, MessagePattern.parse(other, true), method, locals, pound);
+            code.add("$<")
+                    .endControlFlow();
+        }
+        if (!exact.isEmpty()) {
+            code.endControlFlow();
+        }
+        if (!parameter.type.isPrimitive()) {
+            code.endControlFlow();
+        }
+    }
+
+    private static String exactLiteral(BigDecimal value, boolean integer) {
+        if (!integer) {
+            return Double.toString(value.doubleValue());
+        }
+        try {
+            long exact = value.longValueExact();
+            return exact == (int) exact
+                    ? Long.toString(exact)
+                    : exact + "L";
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid plural selector: =" + value);
+        }
+    }
+
+    /**
+     * Adds the methods that return the plural category of a value, the first time they are needed.
+     * Integers only need arithmetic; numbers with fraction digits are written in decimal if the rules
+     * depend on their digits.
+     *
+     * @return The name of the methods
+     */
+    private String pluralCategory(boolean integer) {
+        checkNotNull(pluralRules);
+        if (!integerCategory) {
+            integerCategory = true;
+            typeBuilder.addMethod(MethodSpec.methodBuilder(PLURAL_CATEGORY)
+                    .addJavadoc("@return The index of the plural category of a non-negative integer, with the $L rules\n",
+                            pluralRules.getName())
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .returns(int.class)
+                    .addParameter(long.class, "i")
+                    .addCode(pluralRules.integerCategory("i"))
+                    .build());
+        }
+        if (!integer && !fractionCategory) {
+            fractionCategory = true;
+            typeBuilder.addMethod(MethodSpec.methodBuilder(PLURAL_CATEGORY)
+                    .addJavadoc("@return The index of the plural category of a non-negative number, with the $L rules\n",
+                            pluralRules.getName())
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .returns(int.class)
+                    .addParameter(double.class, "n")
+                    .beginControlFlow("if (n == $T.rint(n))", Math.class)
+                    .addStatement("return $N((long) n)", PLURAL_CATEGORY)
+                    .endControlFlow()
+                    .addCode(pluralRules.fractionCategory("n"))
+                    .build());
+        }
+        return PLURAL_CATEGORY;
+    }
+
+    /**
+     * Chooses the message whose selector is the string value of the argument, or else the other message.
+     */
+    private void addSelect(CodeBlock.Builder code,
+                           String sb,
+                           MessagePattern.Argument argument,
+                           MethodSpec method,
+                           NameAllocator locals,
+                           @Nullable CodeBlock pound) {
+        ParameterSpec parameter = parameter(argument, method);
+        if (parameter == null) {
+            code.addStatement("$N.append($L)", sb, Literals.literal(missing(argument)));
+            return;
+        }
+        Map<String, String> messages = Maps.newLinkedHashMap(
+                MessagePattern.parseBranches(argument.getStyle(), false).getMessages());
+        String other = messages.remove(PluralRules.OTHER);
+        String value;
+        if (parameter.type.equals(STRING)) {
+            value = parameter.name;
+        } else {
+            value = locals.newName("value");
+            code.addStatement("$T $N = $T.valueOf($N)", String.class, value, String.class, parameter);
+        }
+        boolean first = true;
+        for (Map.Entry<String, String> branch : messages.entrySet()) {
+            if (!SELECTOR.matcher(branch.getKey()).matches()) {
+                throw new IllegalArgumentException("Invalid select selector: " + branch.getKey());
+            }
+            if (first) {
+                code.beginControlFlow("if ($S.equals($N))", branch.getKey(), value);
+                first = false;
+            } else {
+                code.nextControlFlow("else if ($S.equals($N))", branch.getKey(), value);
+            }
+            addStatements(code, sb, MessagePattern.parse(branch.getValue(), pound != null), method, locals, pound);
+        }
+        if (!messages.isEmpty()) {
+            code.nextControlFlow("else");
+        }
+        addStatements(code, sb, MessagePattern.parse(other, pound != null), method, locals, pound);
+        if (!messages.isEmpty()) {
+            code.endControlFlow();
+        }
+    }
+
+    private CodeBlock format(MessagePattern.Argument argument, ParameterSpec parameter) {
+        if (plain) {
+            return CodeBlock.of("$N", parameter);
+        }
+        ArgumentKind kind = kind(parameter.type);
+        String type = argument.getType();
+        switch (type) {
+            case "":
+                switch (kind) {
+                    case NUMBER:
+                        return nullSafe(parameter, CodeBlock.of("$N.get().format($N)",
+                                numberFormat(""), parameter));
+                    case DATE:
+                        return nullSafe(parameter, CodeBlock.of("$N.get().format($N)",
+                                dateTimeFormat(), parameter));
+                    case OBJECT:
+                        return CodeBlock.of("$N instanceof $T ? $N.get().format($N) : $N instanceof $T ? $N.get().format($N) : $T.valueOf($N)",
+                                parameter, Number.class, numberFormat(""), parameter,
+                                parameter, Date.class, dateTimeFormat(), parameter,
+                                String.class, parameter);
+                    default:
+                        return CodeBlock.of("$N", parameter);
+                }
+            case "number":
+                checkArgument(kind == ArgumentKind.NUMBER || kind == ArgumentKind.OBJECT, argument, parameter, "a number");
+                return nullSafe(parameter, CodeBlock.of("$N.get().format($N)",
+                        numberFormat(argument.getStyle()), parameter));
+            case "date":
+            case "time":
+                checkArgument(kind != ArgumentKind.STRING && kind != ArgumentKind.OTHER, argument, parameter, "a date or a number");
+                return nullSafe(parameter, CodeBlock.of("$N.get().format($N)",
+                        dateFormat(type, argument.getStyle()), parameter));
+            default:
+                throw new IllegalArgumentException("Unknown format type: " + argument.getType());
+        }
+    }
+
+    private static CodeBlock nullSafe(ParameterSpec parameter, CodeBlock format) {
+        return parameter.type.isPrimitive()
+                ? format
+                : CodeBlock.of("$N == null ? $S : $L", parameter, "null", format);
+    }
+
+    private String numberFormat(String style) {
+        String keyword = style.trim().toLowerCase(Locale.ROOT);
+        switch (keyword) {
+            case "":
+                return formatField(NumberFormat.class, "number",
+                        CodeBlock.of("$T.getInstance($N)", NumberFormat.class, locale()));
+            case "integer":
+                return formatField(NumberFormat.class, "number:integer",
+                        CodeBlock.of("$T.getIntegerInstance($N)", NumberFormat.class, locale()));
+            case "currency":
+                return formatField(NumberFormat.class, "number:currency",
+                        CodeBlock.of("$T.getCurrencyInstance($N)", NumberFormat.class, locale()));
+            case "percent":
+                return formatField(NumberFormat.class, "number:percent",
+                        CodeBlock.of("$T.getPercentInstance($N)", NumberFormat.class, locale()));
+            default:
+                // Fails the build rather than the first use of the message
+                new DecimalFormat(style, DecimalFormatSymbols.getInstance(locale));
+                return formatField(NumberFormat.class, "number:pattern:" + style,
+                        CodeBlock.of("new $T($L, $T.getInstance($N))",
+                                DecimalFormat.class, Literals.literal(style), DecimalFormatSymbols.class, locale()));
+        }
+    }
+
+    private String dateTimeFormat() {
+        return formatField(DateFormat.class, "datetime",
+                CodeBlock.of("$T.getDateTimeInstance($T.SHORT, $T.SHORT, $N)",
+                        DateFormat.class, DateFormat.class, DateFormat.class, locale()));
+    }
+
+    /**
+     * @param type "date" or "time"
+     */
+    private String dateFormat(String type, String style) {
+        String keyword = style.trim().toLowerCase(Locale.ROOT);
+        String factory = type.equals("date")
+                ? "getDateInstance"
+                : "getTimeInstance";
+        switch (keyword) {
+            case "":
+                return formatField(DateFormat.class, type,
+                        CodeBlock.of("$T.$L($T.DEFAULT, $N)", DateFormat.class, factory, DateFormat.class, locale()));
+            case "short":
+            case "medium":
+            case "long":
+            case "full":
+                return formatField(DateFormat.class, type + ":" + keyword,
+                        CodeBlock.of("$T.$L($T.$L, $N)", DateFormat.class, factory, DateFormat.class,
+                                keyword.toUpperCase(Locale.ROOT), locale()));
+            default:
+                new SimpleDateFormat(style, locale);
+                return formatField(DateFormat.class, "date:pattern:" + style,
+                        CodeBlock.of("new $T($L, $N)", SimpleDateFormat.class, Literals.literal(style), locale()));
+        }
+    }
+
+    /**
+     * Formats are not thread-safe, so each thread gets its own, created on first use.
+     */
+    private String formatField(Class<?> formatClass, String key, CodeBlock initializer) {
+        return formats.computeIfAbsent(key, (k) -> {
+            String field = fieldNames.newName("FORMAT_" + formats.size());
+            typeBuilder.addField(FieldSpec.builder(ParameterizedTypeName.get(ThreadLocal.class, formatClass),
+                    field,
+                    Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.withInitial(() -> $L)", ThreadLocal.class, initializer)
+                    .build());
+            return field;
+        });
+    }
+
+    private String locale() {
+        if (localeField == null) {
+            localeField = fieldNames.newName("LOCALE");
+            CodeBlock initializer = locale.equals(Locale.ROOT)
+                    ? CodeBlock.of("$T.ROOT", Locale.class)
+                    : CodeBlock.of("new $T($S, $S, $S)", Locale.class,
+                    locale.getLanguage(), locale.getCountry(), locale.getVariant());
+            typeBuilder.addField(FieldSpec.builder(Locale.class, localeField,
+                    Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer(initializer)
+                    .build());
+        }
+        return localeField;
+    }
+
+    @Nullable
+    private static ParameterSpec parameter(MessagePattern.Argument argument, MethodSpec method) {
+        int index = argument.getIndex();
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid argument index: " + argument.getRawIndex());
+        }
+        return index < method.parameters.size()
+                ? method.parameters.get(index)
+                : null;
+    }
+
+    private static String missing(MessagePattern.Argument argument) {
+        return "???" + argument.getIndex() + "???";
+    }
+
+    private static ArgumentKind kind(TypeName type) {
+        TypeName unboxed = type.isBoxedPrimitive()
+                ? type.unbox()
+                : type;
+        if (unboxed.isPrimitive()) {
+            return unboxed.equals(TypeName.BOOLEAN) || unboxed.equals(TypeName.CHAR)
+                    ? ArgumentKind.OTHER
+                    : ArgumentKind.NUMBER;
+        } else if (type.equals(STRING)) {
+            return ArgumentKind.STRING;
+        } else if (type.equals(ClassName.get(CharSequence.class))) {
+            return ArgumentKind.OTHER;
+        } else if (NUMBER_TYPES.contains(type)) {
+            return ArgumentKind.NUMBER;
+        } else if (DATE_TYPES.contains(type)) {
+            return ArgumentKind.DATE;
+        } else {
+            return ArgumentKind.OBJECT;
+        }
+    }
+
+    private static void checkArgument(boolean valid,
+                                      MessagePattern.Argument argument,
+                                      ParameterSpec parameter,
+                                      String expected) {
+        if (!valid) {
+            throw new IllegalArgumentException("Argument " + argument.getIndex()
+                    + " (" + parameter.name + ") must be " + expected);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.nibiru.gen.i18n;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Parses a {@link java.text.MessageFormat} pattern into literal text and arguments, following
+ * the same quoting and brace rules.
+ * Format types and styles are kept as written, and interpreted by {@link MessageCompiler}.
+ * Inside the branches of a plural argument, an unquoted # stands for the number.
+ */
+final class MessagePattern {
+    private static final Pattern PLAIN_ARGUMENT = Pattern.compile("\\{(\\d+)\\}");
+
+    private MessagePattern() {
+    }
+
+    /**
+     * Parses a message of the {@link org.nibiru.gen.api.i18n.Messages.Syntax#PLAIN} syntax: only
+     * {n} is an argument, and the rest is literal text, quotes and other braces included.
+     */
+    static List<Part> parsePlain(String pattern) {
+        ImmutableList.Builder<Part> parts = ImmutableList.builder();
+        Matcher matcher = PLAIN_ARGUMENT.matcher(pattern);
+        int start = 0;
+        while (matcher.find()) {
+            if (matcher.start() > start) {
+                parts.add(new Text(pattern.substring(start, matcher.start())));
+            }
+            parts.add(new Argument(matcher.group(1), null, null));
+            start = matcher.end();
+        }
+        if (start < pattern.length()) {
+            parts.add(new Text(pattern.substring(start)));
+        }
+        return parts.build();
+    }
+
+    static List<Part> parse(String pattern) {
+        return parse(pattern, false);
+    }
+
+    /**
+     * @param pound Whether an unquoted # is a {@link Pound} rather than text
+     */
+    static List<Part> parse(String pattern, boolean pound) {
+        ImmutableList.Builder<Part> parts = ImmutableList.builder();
+        StringBuilder text = new StringBuilder();
+        StringBuilder[] segments = new StringBuilder[3];
+        int segment = -1;
+        boolean inQuote = false;
+        int braces = 0;
+        for (int n = 0; n < pattern.length(); n++) {
+            char c = pattern.charAt(n);
+            if (segment < 0) {
+                if (c == '\'') {
+                    if (n + 1 < pattern.length() && pattern.charAt(n + 1) == '\'') {
+                        text.append(c);
+                        n++;
+                    } else {
+                        inQuote = !inQuote;
+                    }
+                } else if (c == '#' && pound && !inQuote) {
+                    if (text.length() > 0) {
+                        parts.add(new Text(text.toString()));
+                        text.setLength(0);
+                    }
+                    parts.add(new Pound());
+                } else if (c == '{' && !inQuote) {
+                    if (text.length() > 0) {
+                        parts.add(new Text(text.toString()));
+                        text.setLength(0);
+                    }
+                    segment = 0;
+                    for (int s = 0; s < segments.length; s++) {
+                        segments[s] = new StringBuilder();
+                    }
+                } else {
+                    text.append(c);
+                }
+            } else if (inQuote) {
+                // Quotes inside an argument are kept, the format style interprets them
+                segments[segment].append(c);
+                if (c == '\'') {
+                    inQuote = false;
+                }
+            } else if (c == ',' && segment < 2) {
+                segment++;
+            } else if (c == '{') {
+                braces++;
+                segments[segment].append(c);
+            } else if (c == '}') {
+                if (braces == 0) {
+                    parts.add(new Argument(segments[0].toString(),
+                            segment >= 1 ? segments[1].toString() : null,
+                            segment >= 2 ? segments[2].toString() : null));
+                    segment = -1;
+                } else {
+                    braces--;
+                    segments[segment].append(c);
+                }
+            } else if (c == ' ' && segment == 1 && segments[1].length() == 0) {
+                // Spaces before the format type are ignored
+            } else {
+                if (c == '\'') {
+                    inQuote = true;
+                }
+                segments[segment].append(c);
+            }
+        }
+        if (segment >= 0) {
+            throw new IllegalArgumentException("Unmatched braces in pattern: " + pattern);
+        }
+        if (text.length() > 0) {
+            parts.add(new Text(text.toString()));
+        }
+        return parts.build();
+    }
+
+    /**
+     * Parses the style of a plural or select argument, such as {@code offset:1 =0 {none} other {# more}},
+     * into its selectors and their messages, which are kept as written.
+     */
+    static Branches parseBranches(String style, boolean plural) {
+        long offset = 0;
+        Map<String, String> messages = Maps.newLinkedHashMap();
+        int n = skipSpaces(style, 0);
+        if (plural && style.startsWith("offset:", n)) {
+            int start = skipSpaces(style, n + "offset:".length());
+            int end = start;
+            while (end < style.length() && Character.isDigit(style.charAt(end))) {
+                end++;
+            }
+            if (end == start) {
+                throw new IllegalArgumentException("Invalid plural offset: " + style);
+            }
+            offset = Long.parseLong(style.substring(start, end));
+            n = skipSpaces(style, end);
+        }
+        while (n < style.length()) {
+            int start = n;
+            while (n < style.length() && style.charAt(n) != '{' && !Character.isWhitespace(style.charAt(n))) {
+                n++;
+            }
+            String selector = style.substring(start, n);
+            n = skipSpaces(style, n);
+            if (selector.isEmpty() || n >= style.length() || style.charAt(n) != '{') {
+                throw new IllegalArgumentException("Expected a selector followed by a message in braces: " + style);
+            }
+            int end = closingBrace(style, n);
+            if (messages.put(selector, style.substring(n + 1, end)) != null) {
+                throw new IllegalArgumentException("Duplicate selector " + selector + ": " + style);
+            }
+            n = skipSpaces(style, end + 1);
+        }
+        if (!messages.containsKey(PluralRules.OTHER)) {
+            throw new IllegalArgumentException("Missing other selector: " + style);
+        }
+        return new Branches(offset, messages);
+    }
+
+    private static int skipSpaces(String text, int n) {
+        while (n < text.length() && Character.isWhitespace(text.charAt(n))) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * @param open The index of an opening brace
+     * @return The index of the matching closing brace, skipping quoted text
+     */
+    private static int closingBrace(String text, int open) {
+        boolean inQuote = false;
+        int braces = 0;
+        for (int n = open; n < text.length(); n++) {
+            char c = text.charAt(n);
+            if (c == '\'') {
+                inQuote = !inQuote;
+            } else if (!inQuote && c == '{') {
+                braces++;
+            } else if (!inQuote && c == '}' && --braces == 0) {
+                return n;
+            }
+        }
+        throw new IllegalArgumentException("Unmatched braces: " + text);
+    }
+
+    static final class Branches {
+        private final long offset;
+        private final Map<String, String> messages;
+
+        private Branches(long offset, Map<String, String> messages) {
+            this.offset = offset;
+            this.messages = messages;
+        }
+
+        /**
+         * @return The number subtracted from a plural argument before choosing its category and writing it as #
+         */
+        long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The messages by selector, such as "=0", "one" or "other", in the order they were written
+         */
+        Map<String, String> getMessages() {
+            return messages;
+        }
+    }
+
+    static abstract class Part {
+    }
+
+    static final class Text extends Part {
+        private final String text;
+
+        private Text(String text) {
+            this.text = checkNotNull(text);
+        }
+
+        String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * The number of the enclosing plural argument, minus its offset.
+     */
+    static final class Pound extends Part {
+        private Pound() {
+        }
+    }
+
+    static final class Argument extends Part {
+        private final String index;
+        @Nullable
+        private final String type;
+        @Nullable
+        private final String style;
+
+        private Argument(String index, @Nullable String type, @Nullable String style) {
+            this.index = checkNotNull(index);
+            this.type = type;
+            this.style = style;
+        }
+
+        /**
+         * @return The argument index, or -1 if it is not a number
+         */
+        int getIndex() {
+            try {
+                return Integer.parseInt(index);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        String getRawIndex() {
+            return index;
+        }
+
+        /**
+         * @return The format type in lower case, such as "number", or an empty string if there is none
+         */
+        String getType() {
+            return type != null
+                    ? type.trim().toLowerCase(Locale.ROOT)
+                    : "";
+        }
+
+        /**
+         * @return The format style as written, or an empty string if there is none
+         */
+        String getStyle() {
+            return style != null
+                    ? style
+                    : "";
+        }
+
+        /**
+         * @return The format style in lower case, to be compared with the style keywords
+         */
+        String getStyleKeyword() {
+            return getStyle().trim().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -1,33 +1,78 @@
 package org.nibiru.gen.i18n;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.io.Files;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import org.nibiru.gen.api.i18n.LocaleStrings;
 import org.nibiru.gen.api.i18n.Messages;
 import org.nibiru.gen.core.BaseProcessor;
+import org.nibiru.gen.core.GenerationCache;
 
+import javax.annotation.Nullable;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
-import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.ElementFilter;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @SupportedAnnotationTypes("org.nibiru.gen.api.i18n.Messages")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedOptions({MessagesProcessor.BASE_LANGUAGE_OPTION,
+        MessagesProcessor.STORAGE_OPTION,
+        MessagesProcessor.SYNTAX_OPTION})
 public class MessagesProcessor
         extends BaseProcessor {
+    /**
+     * The language of the base bundles, whose plural rules they use.
+     */
+    static final String BASE_LANGUAGE_OPTION = "nibiru.gen.messages.baseLanguage";
+    static final String STORAGE_OPTION = "nibiru.gen.messages.storage";
+    static final String SYNTAX_OPTION = "nibiru.gen.messages.syntax";
+    private static final String DEFAULT_BASE_LANGUAGE = "en";
     private static String PROPERTIES_EXTENSION = ".properties";
-    private static Pattern ARG_PATTERN = Pattern.compile("\\{(\\d+)\\}");
+    /**
+     * Part of the cache keys. Must change whenever the generated code changes for the same inputs.
+     */
+    private static final String CACHE_VERSION = "8";
+    private static final String FACTORY_SUFFIX = "Factory";
+    private static final String STRINGS_SUFFIX = "Strings";
+    private static final String INSTANCES_NAME = "INSTANCES";
+    private static final String[] LOCALE_GETTERS = {"getLanguage", "getCountry", "getVariant"};
+    /**
+     * The languages whose ISO 639 code changed, by their old and new codes. Up to Java 16,
+     * {@link Locale#getLanguage()} returns the old code even for a locale made with the new one.
+     */
+    private static final Map<String, String> LANGUAGE_ALIASES = ImmutableMap.<String, String>builder()
+            .put("he", "iw").put("iw", "he")
+            .put("id", "in").put("in", "id")
+            .put("yi", "ji").put("ji", "yi")
+            .build();
 
     public MessagesProcessor() {
         super(Messages.class);
@@ -35,7 +80,9 @@ public class MessagesProcessor
 
     @Override
     protected Iterable<JavaFile> generate(Set<? extends Element> elements) {
-        List<JavaFile> types = Lists.newArrayList();
+        List<Bundle> bundles = Lists.newArrayList();
+        List<JavaFile> javaFiles = Lists.newArrayList();
+        Locale baseLocale = new Locale(option(BASE_LANGUAGE_OPTION, DEFAULT_BASE_LANGUAGE));
         for (TypeElement element : ElementFilter.typesIn(elements)) {
             File baseFile = findFile(
                     element.getQualifiedName()
@@ -46,92 +93,519 @@ public class MessagesProcessor
             if (baseFile != null) {
                 File directory = baseFile.getParentFile();
                 if (directory != null) {
-                    types.addAll(Arrays.stream(directory.listFiles())
-                            .filter((File f) -> f.getName().startsWith(element.getSimpleName().toString())
-                                    && f.getName().endsWith(PROPERTIES_EXTENSION))
-                            .map((f) -> build(element, f))
-                            .collect(Collectors.toList()));
+                    Messages annotation = element.getAnnotation(Messages.class);
+                    MessagesType type = new MessagesType(element, storage(annotation), syntax(annotation));
+                    // Sorted by name, so parents always come before their children
+                    Map<String, File> files = Maps.newTreeMap();
+                    for (File file : directory.listFiles()) {
+                        String code = localeCode(type.simpleName, file.getName());
+                        if (code != null) {
+                            files.put(code, file);
+                        }
+                    }
+                    for (Map.Entry<String, File> file : files.entrySet()) {
+                        List<File> parents = Lists.newArrayList();
+                        for (String code = parentCode(file.getKey()); code != null; code = parentCode(code)) {
+                            if (files.containsKey(code)) {
+                                parents.add(files.get(code));
+                            }
+                        }
+                        bundles.add(new Bundle(type, file.getValue(), parents, baseLocale));
+                    }
+                    javaFiles.add(buildFactory(type, files.keySet()));
                 }
             }
         }
-        return types;
+
+        // The texts of all the bundles of a type share a table, so they are collected before building any of them
+        List<Bundle> tableBundles = bundles.stream()
+                .filter((b) -> b.type.table != null)
+                .collect(Collectors.toList());
+        Map<Bundle, List<String>> constants = Maps.newHashMap();
+        Map<Bundle, StringTable.LocaleTexts> tableLocales = Maps.newHashMap();
+        List<List<String>> texts = generateInParallel(tableBundles, this::constantTexts);
+        Set<MessagesType> tableTypes = Sets.newLinkedHashSet();
+        for (int n = 0; n < tableBundles.size(); n++) {
+            Bundle bundle = tableBundles.get(n);
+            StringTable.LocaleTexts locale = bundle.type.table.addLocale();
+            for (String text : texts.get(n)) {
+                if (text != null) {
+                    locale.add(text);
+                }
+            }
+            constants.put(bundle, texts.get(n));
+            tableLocales.put(bundle, locale);
+            tableTypes.add(bundle.type);
+        }
+        for (MessagesType type : tableTypes) {
+            if (type.table.size() > 0) {
+                byte[] bytes = type.table.toBytes();
+                writeStringTable(type, bytes);
+                javaFiles.add(buildStrings(type));
+            }
+        }
+
+        // Bundles are parsed and built in parallel, from the model extracted above
+        GenerationCache cache = cache();
+        List<String> sources = generateInParallel(bundles,
+                (bundle) -> buildSource(bundle, constants.get(bundle), tableLocales.get(bundle), cache));
+        for (int n = 0; n < bundles.size(); n++) {
+            Bundle bundle = bundles.get(n);
+            writeSource(bundle.type.className.packageName() + "." + bundle.typeName(),
+                    sources.get(n),
+                    Collections.singleton(bundle.type.element));
+        }
+        return javaFiles;
     }
 
-    private JavaFile build(TypeElement element,
-                           File file) {
+    private Messages.Storage storage(Messages annotation) {
+        return annotation.storage() == Messages.Storage.DEFAULT
+                ? Messages.Storage.valueOf(option(STORAGE_OPTION, Messages.Storage.CONSTANTS.name())
+                .toUpperCase(Locale.ROOT))
+                : annotation.storage();
+    }
 
-        try {
-            ResourceBundle resourceBundle = new PropertyResourceBundle(new FileInputStream(file));
+    private Messages.Syntax syntax(Messages annotation) {
+        return annotation.syntax() == Messages.Syntax.DEFAULT
+                ? Messages.Syntax.valueOf(option(SYNTAX_OPTION, Messages.Syntax.PLAIN.name())
+                .toUpperCase(Locale.ROOT))
+                : annotation.syntax();
+    }
 
-            String code = file.getName()
-                    .substring(element.getSimpleName().length(),
-                            file.getName().length() - PROPERTIES_EXTENSION.length());
+    /**
+     * @return The locale suffix of a bundle of the given type, such as "_es_AR", an empty string for
+     * the base bundle, or null if the file is not a bundle of the type
+     */
+    @Nullable
+    private static String localeCode(String simpleName, String fileName) {
+        if (!fileName.startsWith(simpleName) || !fileName.endsWith(PROPERTIES_EXTENSION)) {
+            return null;
+        }
+        String code = fileName.substring(simpleName.length(),
+                fileName.length() - PROPERTIES_EXTENSION.length());
+        return code.isEmpty() || code.startsWith("_")
+                ? code
+                : null;
+    }
 
-            String typeName = element.getSimpleName()
-                    + "Impl"
-                    + code;
-
-            TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(typeName)
-                    .addModifiers(Modifier.PUBLIC)
-                    .addSuperinterface(ClassName.get(element));
-
-            for (ExecutableElement executableElement : ElementFilter
-                    .methodsIn(element.getEnclosedElements())) {
-                typeBuilder.addMethod(buildMethod(executableElement)
-                        .addStatement("return $L",
-                                buildStringExpression(resourceBundle.getString(executableElement
-                                                .getSimpleName().toString()),
-                                        executableElement))
+    /**
+     * @return The code of the parent bundle, such as "_es" for "_es_AR", or null for the base bundle
+     */
+    @Nullable
+    private static String parentCode(String code) {
+        return code.isEmpty()
+                ? null
+                : code.substring(0, code.lastIndexOf('_'));
+    }
+
+    /**
+     * @param code A locale suffix, such as "_es_AR"
+     */
+    private static Locale locale(String code) {
+        List<String> parts = Splitter.on('_').splitToList(code);
+        return parts.size() < 2
+                ? Locale.ROOT
+                : new Locale(parts.get(1),
+                parts.size() > 2 ? parts.get(2) : "",
+                parts.size() > 3 ? parts.get(3) : "");
+    }
+
+    /**
+     * Builds FooFactory, which returns the implementation of the nearest bundle of a locale, without
+     * reflection. Each implementation is created once.
+     *
+     * @param codes The locale suffixes of the bundles, starting with the base bundle
+     */
+    private JavaFile buildFactory(MessagesType type, Collection<String> codes) {
+        List<String> indexes = Lists.newArrayList(codes);
+        String typeName = type.simpleName + FACTORY_SUFFIX;
+
+        CodeBlock.Builder create = CodeBlock.builder()
+                .beginControlFlow("switch (index)");
+        for (int n = 0; n < indexes.size(); n++) {
+            create.add("case $L:\n", n)
+                    .indent()
+                    .addStatement("return new $T()",
+                            ClassName.get(type.className.packageName(), type.simpleName + "Impl" + indexes.get(n)))
+                    .unindent();
+        }
+        create.add("default:\n")
+                .indent()
+                .addStatement("throw new $T($S + index)", IllegalArgumentException.class, "Invalid bundle index: ")
+                .unindent()
+                .endControlFlow();
+
+        CodeBlock.Builder index = CodeBlock.builder();
+        addLocaleSwitch(index, indexes, "", 0, 0);
+
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(typeName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(type.element)
+                .addField(FieldSpec.builder(ArrayTypeName.of(type.className), INSTANCES_NAME,
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T[$L]", type.className, indexes.size())
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("get")
+                        .addJavadoc("@return The messages of the locale, or of its nearest parent that has a bundle\n")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(type.className)
+                        .addParameter(Locale.class, "locale")
+                        .addStatement("int index = index(locale)")
+                        // Implementations are stateless, so creating one twice in a race is harmless
+                        .addStatement("$T instance = $N[index]", type.className, INSTANCES_NAME)
+                        .beginControlFlow("if (instance == null)")
+                        .addStatement("instance = create(index)")
+                        .addStatement("$N[index] = instance", INSTANCES_NAME)
+                        .endControlFlow()
+                        .addStatement("return instance")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("get")
+                        .addJavadoc("@return The messages of the default locale\n")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(type.className)
+                        .addStatement("return get($T.getDefault())", Locale.class)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("index")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .returns(int.class)
+                        .addParameter(Locale.class, "locale")
+                        .addCode(index.build())
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("create")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .returns(type.className)
+                        .addParameter(int.class, "index")
+                        .addCode(create.build())
                         .build());
-            }
 
-            return buildJavaFile(element, typeBuilder);
-        } catch (RuntimeException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        return JavaFile.builder(type.className.packageName(),
+                typeBuilder.build())
+                .build();
+    }
+
+    /**
+     * Switches on the language, then the country, then the variant of the locale. At each level,
+     * locales without a bundle of their own get the one of their nearest parent.
+     * Languages match by their old and new codes alike.
+     */
+    private static void addLocaleSwitch(CodeBlock.Builder code,
+                                        List<String> codes,
+                                        String prefix,
+                                        int level,
+                                        int fallback) {
+        int index = codes.indexOf(prefix);
+        int parentIndex = index >= 0
+                ? index
+                : fallback;
+        Set<String> children = Sets.newTreeSet();
+        for (String candidate : codes) {
+            List<String> parts = Splitter.on('_').splitToList(candidate);
+            if (candidate.startsWith(prefix + "_") && parts.size() > level + 1 && level < LOCALE_GETTERS.length) {
+                children.add(parts.get(level + 1));
+            }
+        }
+        if (children.isEmpty()) {
+            code.addStatement("return $L", parentIndex);
+        } else {
+            code.beginControlFlow("switch (locale.$L())", LOCALE_GETTERS[level]);
+            for (String child : children) {
+                code.add("case $S:\n", child);
+                // Bundles named with either code of a language match it on any Java version
+                String alias = level == 0 ? LANGUAGE_ALIASES.get(child) : null;
+                if (alias != null && !children.contains(alias)) {
+                    code.add("case $S:\n", alias);
+                }
+                code.indent();
+                addLocaleSwitch(code, codes, prefix + "_" + child, level + 1, parentIndex);
+                code.unindent();
+            }
+            code.add("default:\n")
+                    .indent()
+                    .addStatement("return $L", parentIndex)
+                    .unindent()
+                    .endControlFlow();
         }
     }
 
-    private String buildStringExpression(String expression,
-                                         ExecutableElement executableElement) {
-        Matcher matcher = ARG_PATTERN.matcher(expression);
+    /**
+     * Writes the table of a type next to its classes, as FooStrings.strings.
+     */
+    private void writeStringTable(MessagesType type, byte[] bytes) {
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT,
+                            type.className.packageName(),
+                            type.table.getResourceName(),
+                            type.element);
+            try (OutputStream out = resource.openOutputStream()) {
+                out.write(bytes);
+            }
+            recordOutput(type.className.packageName() + "." + type.table.getResourceName(), bytes.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        StringBuilder sb = new StringBuilder();
-        int start = 0;
-        sb.append('"');
-        while (matcher.find()) {
-            sb.append(expression.substring(start, matcher.start()));
+    /**
+     * Builds FooStrings, which loads the texts of a locale from the table of its type when one of them
+     * is first used, without the texts of the other locales.
+     */
+    private JavaFile buildStrings(MessagesType type) {
+        StringTable table = type.table;
+        TypeName className = table.getClassName();
+        TypeSpec.Builder builder = TypeSpec.classBuilder(table.getClassName())
+                .addJavadoc("The messages without arguments of all the bundles of {@link $T}.\n", type.className)
+                .addModifiers(Modifier.FINAL)
+                .addOriginatingElement(type.element)
+                .addField(FieldSpec.builder(LocaleStrings[].class, "LOCALES", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T[$L]", LocaleStrings.class, table.localeCount())
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("get")
+                        .addModifiers(Modifier.STATIC)
+                        .returns(String.class)
+                        .addParameter(int.class, "locale")
+                        .addParameter(int.class, "slot")
+                        // LocaleStrings only has final fields, so loading a locale twice in a race is harmless
+                        .addStatement("$T strings = LOCALES[locale]", LocaleStrings.class)
+                        .beginControlFlow("if (strings == null)")
+                        .addStatement("strings = $T.load($T.class, $S, locale)",
+                                LocaleStrings.class, className, table.getResourceName())
+                        .addStatement("LOCALES[locale] = strings")
+                        .endControlFlow()
+                        .addStatement("return strings.get(slot)")
+                        .build());
+        return JavaFile.builder(type.className.packageName(), builder.build())
+                .build();
+    }
 
-            String argStr = matcher.group(1);
-            boolean isValid;
-            int arg = 0;
+    /**
+     * @return For each method, its message if it has no arguments, otherwise null
+     */
+    private List<String> constantTexts(Bundle bundle) {
+        List<String> patterns = patterns(bundle, contents(bundle));
+        List<String> texts = Lists.newArrayList();
+        for (int n = 0; n < patterns.size(); n++) {
+            MethodSpec method = bundle.type.methods.get(n);
             try {
-                arg = Integer.parseInt(argStr);
-                isValid = arg >= 0
-                        && arg < executableElement.getParameters().size();
-            } catch (NumberFormatException e) {
-                isValid = false;
+                texts.add(MessageCompiler.constantText(method, patterns.get(n), bundle.type.plain));
+            } catch (IllegalArgumentException e) {
+                throw invalidMessage(bundle, method, e);
             }
+        }
+        return texts;
+    }
 
-            if (isValid) {
-                sb.append("\"+");
-                sb.append(executableElement.getParameters()
-                        .get(arg)
-                        .getSimpleName()
-                        .toString());
-                sb.append("+\"");
-            } else {
-                sb.append("???");
-                sb.append(argStr);
-                sb.append("???");
+    /**
+     * @param constants   The messages without arguments of the bundle, by method, if the type has a table
+     * @param tableLocale The texts of the bundle in the table, if the type has one
+     */
+    private String buildSource(Bundle bundle,
+                               @Nullable List<String> constants,
+                               @Nullable StringTable.LocaleTexts tableLocale,
+                               @Nullable GenerationCache cache) {
+        List<byte[]> contents = contents(bundle);
+        String key = null;
+        String source = null;
+        if (cache != null) {
+            Hasher hasher = GenerationCache.keyBuilder()
+                    .putString(CACHE_VERSION, Charsets.UTF_8)
+                    .putString(bundle.type.className.toString(), Charsets.UTF_8)
+                    .putString(bundle.typeName(), Charsets.UTF_8)
+                    .putString(bundle.pluralLocale().toString(), Charsets.UTF_8);
+            for (byte[] content : contents) {
+                hasher.putInt(content.length)
+                        .putBytes(content);
+            }
+            for (MethodSpec method : bundle.type.methods) {
+                hasher.putString(method.toString(), Charsets.UTF_8);
             }
+            hasher.putBoolean(bundle.type.plain);
+            hasher.putBoolean(constants != null);
+            if (constants != null) {
+                hasher.putInt(tableLocale.getIndex());
+                for (String text : constants) {
+                    hasher.putInt(text != null ? tableLocale.slot(text) : -1);
+                }
+            }
+            key = hasher.hash().toString();
+            source = cache.get(key);
+        }
+        if (source == null) {
+            recordInput(bundle.path(), contents.get(0).length);
+            source = timed(bundle.path(),
+                    () -> build(bundle, contents, tableLocale).toString());
+            if (key != null) {
+                cache.put(key, source);
+            }
+        }
+        return source;
+    }
+
+    /**
+     * @return The bytes of the bundle, followed by those of its parents
+     */
+    private static List<byte[]> contents(Bundle bundle) {
+        try {
+            List<byte[]> contents = Lists.newArrayList(Files.toByteArray(bundle.file));
+            for (File parent : bundle.parents) {
+                contents.add(Files.toByteArray(parent));
+            }
+            return contents;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param contents The bundle, followed by its parents. Keys missing from the bundle are taken
+     *                 from the nearest parent, as {@link ResourceBundle} does at runtime.
+     * @return The pattern of each method
+     */
+    private static List<String> patterns(Bundle bundle, List<byte[]> contents) {
+        try {
+            List<ResourceBundle> resourceBundles = Lists.newArrayList();
+            for (byte[] content : contents) {
+                try (InputStream in = new ByteArrayInputStream(content)) {
+                    resourceBundles.add(new PropertyResourceBundle(in));
+                }
+            }
+            List<String> patterns = Lists.newArrayList();
+            for (MethodSpec method : bundle.type.methods) {
+                patterns.add(resourceBundles.stream()
+                        .filter((b) -> b.containsKey(method.name))
+                        .map((b) -> b.getString(method.name))
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalStateException("Missing message " + method.name
+                                + " in " + bundle.path() + " and its parents")));
+            }
+            return patterns;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static IllegalStateException invalidMessage(Bundle bundle,
+                                                        MethodSpec method,
+                                                        IllegalArgumentException e) {
+        return new IllegalStateException("Invalid message " + method.name
+                + " in " + bundle.path() + ": " + e.getMessage(), e);
+    }
+
+    private JavaFile build(Bundle bundle, List<byte[]> contents, @Nullable StringTable.LocaleTexts tableLocale) {
+        MessagesType type = bundle.type;
+        List<String> patterns = patterns(bundle, contents);
+
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(bundle.typeName())
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(type.className)
+                .addOriginatingElement(type.element);
+
+        MessageCompiler compiler = new MessageCompiler(bundle.locale(),
+                type.plain,
+                PluralRules.of(bundle.pluralLocale()),
+                tableLocale,
+                typeBuilder);
+        for (int n = 0; n < patterns.size(); n++) {
+            MethodSpec method = type.methods.get(n);
+            try {
+                typeBuilder.addMethod(compiler.compile(method, patterns.get(n)));
+            } catch (IllegalArgumentException e) {
+                throw invalidMessage(bundle, method, e);
+            }
+        }
+
+        return JavaFile.builder(type.className.packageName(),
+                typeBuilder.build())
+                .build();
+    }
+
+    /**
+     * What is needed from a {@link Messages} interface to build its implementations,
+     * extracted on the compiler thread.
+     */
+    private static class MessagesType {
+        private final TypeElement element;
+        private final ClassName className;
+        private final String simpleName;
+        private final List<MethodSpec> methods;
+        /**
+         * Whether the messages have the {@link Messages.Syntax#PLAIN} syntax.
+         */
+        private final boolean plain;
+        /**
+         * The table of the messages without arguments, or null if they are constants.
+         * Filled before the bundles are built.
+         */
+        @Nullable
+        private final StringTable table;
+
+        private MessagesType(TypeElement element, Messages.Storage storage, Messages.Syntax syntax) {
+            this.element = element;
+            this.plain = syntax == Messages.Syntax.PLAIN;
+            this.className = ClassName.get(element);
+            this.simpleName = element.getSimpleName().toString();
+            this.table = storage == Messages.Storage.TABLE
+                    ? new StringTable(ClassName.get(className.packageName(), simpleName + STRINGS_SUFFIX))
+                    : null;
+            this.methods = ElementFilter.methodsIn(element.getEnclosedElements())
+                    .stream()
+                    .map((m) -> buildMethod(m).build())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static class Bundle {
+        private final MessagesType type;
+        private final File file;
+        /**
+         * The parent bundles, nearest first.
+         */
+        private final List<File> parents;
+        private final Locale baseLocale;
 
-            start = matcher.end();
+        private Bundle(MessagesType type, File file, List<File> parents, Locale baseLocale) {
+            this.type = type;
+            this.file = file;
+            this.parents = parents;
+            this.baseLocale = baseLocale;
         }
-        sb.append(expression.substring(start));
-        sb.append('"');
 
-        return sb.toString();
+        private String path() {
+            return type.className.packageName().replace('.', '/')
+                    + "/"
+                    + file.getName();
+        }
+
+        private String typeName() {
+            return type.simpleName
+                    + "Impl"
+                    + code();
+        }
+
+        /**
+         * @return The locale suffix of the bundle, such as "_es_AR", or an empty string for the base bundle
+         */
+        private String code() {
+            return localeCode(type.simpleName, file.getName());
+        }
+
+        private Locale locale() {
+            return MessagesProcessor.locale(code());
+        }
+
+        /**
+         * @return The locale whose plural rules the bundle uses: its own, or the base language for the base bundle
+         */
+        private Locale pluralLocale() {
+            return code().isEmpty()
+                    ? baseLocale
+                    : locale();
+        }
     }
 }
@@ -0,0 +1,415 @@
+package org.nibiru.gen.i18n;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.squareup.javapoet.CodeBlock;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The CLDR plural rules of a language, compiled into Java conditions.
+ * Rules are written in the CLDR syntax, over the operands n (absolute value), i (integer digits),
+ * v and w (number of visible fraction digits, with and without trailing zeros), and f and t (visible
+ * fraction digits, with and without trailing zeros). Integer arguments have no fraction digits, so their
+ * conditions only use i, and relations on the other operands are resolved at build time. The compact
+ * exponent operand e is always 0.
+ */
+class PluralRules {
+    static final String OTHER = "other";
+    /**
+     * The categories in the order they are tested. The index of a category is what the generated
+     * methods return, and the last one, "other", is returned when no rule matches.
+     */
+    static final List<String> CATEGORIES = ImmutableList.of("zero", "one", "two", "few", "many", OTHER);
+
+    private static final String ONE_INTEGER = "one: i = 1 and v = 0";
+    private static final String ONE_EXACT = "one: n = 1";
+    private static final String MANY_MILLIONS = "many: i != 0 and i % 1000000 = 0 and v = 0";
+    private static final String EAST_SLAVIC = "one: v = 0 and i % 10 = 1 and i % 100 != 11;"
+            + " few: v = 0 and i % 10 = 2..4 and i % 100 != 12..14;"
+            + " many: v = 0 and i % 10 = 0 or v = 0 and i % 10 = 5..9 or v = 0 and i % 100 = 11..14";
+    private static final String SOUTH_SLAVIC = "one: v = 0 and i % 10 = 1 and i % 100 != 11 or f % 10 = 1 and f % 100 != 11;"
+            + " few: v = 0 and i % 10 = 2..4 and i % 100 != 12..14 or f % 10 = 2..4 and f % 100 != 12..14";
+    private static final String WEST_SLAVIC = ONE_INTEGER + "; few: i = 2..4 and v = 0; many: v != 0";
+    private static final String HINDI = "one: i = 0 or n = 1";
+    /**
+     * Rules by language, or by language and country where they differ. Languages without plural
+     * forms have no rules, so everything is "other".
+     */
+    private static final Map<String, String> RULES = ImmutableMap.<String, String>builder()
+            .put("ar", "zero: n = 0; one: n = 1; two: n = 2; few: n % 100 = 3..10; many: n % 100 = 11..99")
+            .put("bg", ONE_EXACT)
+            .put("bn", HINDI)
+            .put("bs", SOUTH_SLAVIC)
+            .put("ca", ONE_INTEGER + "; " + MANY_MILLIONS)
+            .put("cs", WEST_SLAVIC)
+            .put("da", "one: n = 1 or t != 0 and i = 0,1")
+            .put("de", ONE_INTEGER)
+            .put("el", ONE_EXACT)
+            .put("en", ONE_INTEGER)
+            .put("es", ONE_EXACT + "; " + MANY_MILLIONS)
+            .put("et", ONE_INTEGER)
+            .put("fa", HINDI)
+            .put("fi", ONE_INTEGER)
+            .put("fr", "one: i = 0,1; " + MANY_MILLIONS)
+            .put("he", "one: i = 1 and v = 0 or i = 0 and v != 0; two: i = 2 and v = 0")
+            .put("hi", HINDI)
+            .put("hr", SOUTH_SLAVIC)
+            .put("hu", ONE_EXACT)
+            .put("id", "")
+            .put("is", "one: t = 0 and i % 10 = 1 and i % 100 != 11 or t % 10 = 1 and t % 100 != 11")
+            .put("it", ONE_INTEGER + "; " + MANY_MILLIONS)
+            .put("ja", "")
+            .put("ko", "")
+            .put("lt", "one: n % 10 = 1 and n % 100 != 11..19; few: n % 10 = 2..9 and n % 100 != 11..19; many: f != 0")
+            .put("lv", "zero: n % 10 = 0 or n % 100 = 11..19 or v = 2 and f % 100 = 11..19;"
+                    + " one: n % 10 = 1 and n % 100 != 11 or v = 2 and f % 10 = 1 and f % 100 != 11 or v != 2 and f % 10 = 1")
+            .put("ms", "")
+            .put("nb", ONE_EXACT)
+            .put("nl", ONE_INTEGER)
+            .put("no", ONE_EXACT)
+            .put("pl", ONE_INTEGER + "; few: v = 0 and i % 10 = 2..4 and i % 100 != 12..14;"
+                    + " many: v = 0 and i != 1 and i % 10 = 0..1 or v = 0 and i % 10 = 5..9 or v = 0 and i % 100 = 12..14")
+            .put("pt", "one: i = 0..1; " + MANY_MILLIONS)
+            .put("pt_PT", ONE_INTEGER + "; " + MANY_MILLIONS)
+            .put("ro", ONE_INTEGER + "; few: v != 0 or n = 0 or n != 1 and n % 100 = 1..19")
+            .put("ru", EAST_SLAVIC)
+            .put("sk", WEST_SLAVIC)
+            .put("sl", "one: v = 0 and i % 100 = 1; two: v = 0 and i % 100 = 2; few: v = 0 and i % 100 = 3..4 or v != 0")
+            .put("sr", SOUTH_SLAVIC)
+            .put("sv", ONE_INTEGER)
+            .put("th", "")
+            .put("tr", ONE_EXACT)
+            .put("uk", EAST_SLAVIC)
+            .put("vi", "")
+            .put("zh", "")
+            .build();
+
+    private final String name;
+    /**
+     * Conditions by category, without "other".
+     */
+    private final Map<String, Condition> conditions;
+
+    private PluralRules(String name, String rules) {
+        this.name = checkNotNull(name);
+        this.conditions = Maps.newLinkedHashMap();
+        for (String rule : Splitter.on(';').trimResults().omitEmptyStrings().split(rules)) {
+            int colon = rule.indexOf(':');
+            String category = rule.substring(0, colon).trim();
+            if (!CATEGORIES.contains(category) || category.equals(OTHER)) {
+                throw new IllegalArgumentException("Invalid plural category " + category + " in " + name);
+            }
+            conditions.put(category, new Parser(rule.substring(colon + 1)).parse());
+        }
+    }
+
+    /**
+     * @return The rules of the locale, or null if there are none for its language
+     */
+    @Nullable
+    static PluralRules of(Locale locale) {
+        String name = locale.getLanguage() + "_" + locale.getCountry();
+        String rules = RULES.get(name);
+        if (rules == null) {
+            name = locale.getLanguage();
+            rules = RULES.get(name);
+        }
+        return rules != null
+                ? new PluralRules(name, rules)
+                : null;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean hasCategory(String category) {
+        return category.equals(OTHER) || conditions.containsKey(category);
+    }
+
+    /**
+     * @return The body of a method that returns the index of the category of a non-negative integer.
+     *
+     * @param i The name of the long parameter
+     */
+    CodeBlock integerCategory(String i) {
+        return category(new Operands(i, null, null, null, true));
+    }
+
+    /**
+     * @return The statements that return the index of the category of a non-negative number that has
+     * fraction digits. Its operands are taken from its shortest decimal representation, only if a rule needs them.
+     *
+     * @param n The name of the double parameter
+     */
+    CodeBlock fractionCategory(String n) {
+        Operands operands = new Operands("i", "v", "f", "f", false);
+        CodeBlock.Builder code = CodeBlock.builder();
+        if (!category(operands).equals(category(operands, Collections.emptyMap()))) {
+            code.beginControlFlow("if ($T.isNaN($N))", Double.class, n)
+                    .addStatement("return $L", CATEGORIES.indexOf(OTHER))
+                    .endControlFlow()
+                    .addStatement("$T digits = $T.valueOf($N).stripTrailingZeros().toPlainString()",
+                    String.class, BigDecimal.class, n)
+                    .addStatement("$T fraction = digits.substring(digits.indexOf('.') + 1)", String.class)
+                    .addStatement("long i = (long) $N", n)
+                    .addStatement("int v = fraction.length()")
+                    .addStatement("long f = $T.parseLong(fraction)", Long.class);
+        }
+        return code.add(category(operands))
+                .build();
+    }
+
+    private CodeBlock category(Operands operands) {
+        return category(operands, conditions);
+    }
+
+    private static CodeBlock category(Operands operands, Map<String, Condition> conditions) {
+        CodeBlock.Builder code = CodeBlock.builder();
+        for (Map.Entry<String, Condition> condition : conditions.entrySet()) {
+            String expression = condition.getValue().toJava(operands);
+            if (expression.equals("true")) {
+                return code.addStatement("return $L", CATEGORIES.indexOf(condition.getKey()))
+                        .build();
+            } else if (!expression.equals("false")) {
+                code.beginControlFlow("if ($L)", expression)
+                        .addStatement("return $L", CATEGORIES.indexOf(condition.getKey()))
+                        .endControlFlow();
+            }
+        }
+        return code.addStatement("return $L", CATEGORIES.indexOf(OTHER))
+                .build();
+    }
+
+    /**
+     * How each operand is written in the generated code. Fraction digits are stored without
+     * trailing zeros, so w is the same as v, and t the same as f.
+     */
+    private static class Operands {
+        private final String i;
+        @Nullable
+        private final String v;
+        @Nullable
+        private final String f;
+        @Nullable
+        private final String t;
+        private final boolean integer;
+
+        private Operands(String i, @Nullable String v, @Nullable String f, @Nullable String t, boolean integer) {
+            this.i = i;
+            this.v = v;
+            this.f = f;
+            this.t = t;
+            this.integer = integer;
+        }
+
+        /**
+         * @return The name of the operand, or null if it is always 0
+         */
+        @Nullable
+        private String get(char operand) {
+            switch (operand) {
+                case 'n':
+                case 'i':
+                    return i;
+                case 'v':
+                case 'w':
+                    return v;
+                case 'f':
+                    return f;
+                case 't':
+                    return t;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * A disjunction of conjunctions of relations, as CLDR rules have no parentheses.
+     */
+    private static class Condition {
+        private final List<List<Relation>> alternatives;
+
+        private Condition(List<List<Relation>> alternatives) {
+            this.alternatives = alternatives;
+        }
+
+        /**
+         * @return A Java expression, folded to "true" or "false" when it does not depend on the operands
+         */
+        private String toJava(Operands operands) {
+            List<List<String>> disjunction = Lists.newArrayList();
+            for (List<Relation> relations : alternatives) {
+                List<String> conjunction = Lists.newArrayList();
+                for (Relation relation : relations) {
+                    conjunction.add(relation.toJava(operands));
+                }
+                if (conjunction.contains("false")) {
+                    continue;
+                }
+                conjunction.removeIf("true"::equals);
+                if (conjunction.isEmpty()) {
+                    return "true";
+                }
+                disjunction.add(conjunction);
+            }
+            if (disjunction.isEmpty()) {
+                return "false";
+            } else if (disjunction.size() == 1) {
+                return Joiner.on(" && ").join(disjunction.get(0));
+            }
+            return disjunction.stream()
+                    .map((c) -> c.size() > 1
+                            ? "(" + Joiner.on(" && ").join(c) + ")"
+                            : c.get(0))
+                    .collect(Collectors.joining(" || "));
+        }
+    }
+
+    private static class Relation {
+        private final char operand;
+        private final long modulus;
+        private final boolean negated;
+        /**
+         * Pairs of inclusive bounds.
+         */
+        private final List<long[]> ranges;
+
+        private Relation(char operand, long modulus, boolean negated, List<long[]> ranges) {
+            this.operand = operand;
+            this.modulus = modulus;
+            this.negated = negated;
+            this.ranges = ranges;
+        }
+
+        private String toJava(Operands operands) {
+            if (operand == 'n' && !operands.integer) {
+                // CLDR values are integers, which a number with fraction digits is never equal to
+                return negated ? "true" : "false";
+            }
+            if (operand != 'i' && !operands.integer && modulus == 0
+                    && ranges.stream().allMatch((r) -> r[0] == 0 && r[1] == 0)) {
+                // Without trailing zeros, the fraction digits of such a number are never 0
+                return negated ? "true" : "false";
+            }
+            String name = operands.get(operand);
+            if (name == null) {
+                boolean matches = ranges.stream()
+                        .anyMatch((r) -> r[0] <= 0 && 0 <= r[1]);
+                return matches != negated ? "true" : "false";
+            }
+            String value = modulus > 0
+                    ? name + " % " + modulus
+                    : name;
+            List<String> tests = Lists.newArrayList();
+            for (long[] range : ranges) {
+                if (range[0] == range[1]) {
+                    tests.add(value + (negated ? " != " : " == ") + range[0]);
+                } else if (negated) {
+                    tests.add("(" + value + " < " + range[0] + " || " + value + " > " + range[1] + ")");
+                } else {
+                    tests.add(value + " >= " + range[0] + " && " + value + " <= " + range[1]);
+                }
+            }
+            String joined = Joiner.on(negated ? " && " : " || ").join(tests);
+            return tests.size() > 1 && !negated
+                    ? "(" + joined + ")"
+                    : joined;
+        }
+    }
+
+    private static class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        private Parser(String rule) {
+            this.tokens = Lists.newArrayList();
+            for (int n = 0; n < rule.length(); ) {
+                char c = rule.charAt(n);
+                int end = n + 1;
+                if (Character.isLetterOrDigit(c)) {
+                    while (end < rule.length() && Character.isLetterOrDigit(rule.charAt(end))) {
+                        end++;
+                    }
+                } else if (rule.startsWith("..", n) || rule.startsWith("!=", n)) {
+                    end = n + 2;
+                }
+                if (!Character.isWhitespace(c)) {
+                    tokens.add(rule.substring(n, end));
+                }
+                n = end;
+            }
+        }
+
+        private Condition parse() {
+            List<List<Relation>> alternatives = Lists.newArrayList();
+            do {
+                List<Relation> relations = Lists.newArrayList();
+                do {
+                    relations.add(relation());
+                } while (accept("and"));
+                alternatives.add(relations);
+            } while (accept("or"));
+            if (position < tokens.size()) {
+                throw new IllegalArgumentException("Unexpected " + tokens.get(position) + " in plural rule");
+            }
+            return new Condition(alternatives);
+        }
+
+        private Relation relation() {
+            String operand = next();
+            if (operand.length() != 1 || "nivwfte".indexOf(operand.charAt(0)) < 0) {
+                throw new IllegalArgumentException("Invalid plural operand " + operand);
+            }
+            long modulus = accept("%")
+                    ? Long.parseLong(next())
+                    : 0;
+            boolean negated;
+            if (accept("=")) {
+                negated = false;
+            } else if (accept("!=")) {
+                negated = true;
+            } else {
+                throw new IllegalArgumentException("Expected = or != in plural rule");
+            }
+            List<long[]> ranges = Lists.newArrayList();
+            do {
+                long from = Long.parseLong(next());
+                long to = accept("..")
+                        ? Long.parseLong(next())
+                        : from;
+                ranges.add(new long[]{from, to});
+            } while (accept(","));
+            return new Relation(operand.charAt(0), modulus, negated, ranges);
+        }
+
+        private boolean accept(String token) {
+            if (position < tokens.size() && tokens.get(position).equals(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private String next() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Unexpected end of plural rule");
+            }
+            return tokens.get(position++);
+        }
+    }
+}
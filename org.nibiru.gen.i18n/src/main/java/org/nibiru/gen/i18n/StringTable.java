@@ -0,0 +1,125 @@
+package org.nibiru.gen.i18n;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.squareup.javapoet.ClassName;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The messages without arguments of a {@link org.nibiru.gen.api.i18n.Messages} type, in all its
+ * locales, with each distinct text stored once, and the texts of each locale, so that a locale can be
+ * loaded without the others. The layout of the resource is described by
+ * {@link org.nibiru.gen.api.i18n.LocaleStrings}.
+ */
+class StringTable {
+    static final String RESOURCE_EXTENSION = ".strings";
+
+    private final ClassName className;
+    private final Map<String, Integer> ids;
+    private final List<LocaleTexts> locales;
+
+    StringTable(ClassName className) {
+        this.className = checkNotNull(className);
+        this.ids = Maps.newLinkedHashMap();
+        this.locales = Lists.newArrayList();
+    }
+
+    /**
+     * @return The class that loads the texts
+     */
+    ClassName getClassName() {
+        return className;
+    }
+
+    String getResourceName() {
+        return className.simpleName() + RESOURCE_EXTENSION;
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    int localeCount() {
+        return locales.size();
+    }
+
+    LocaleTexts addLocale() {
+        LocaleTexts locale = new LocaleTexts(locales.size());
+        locales.add(locale);
+        return locale;
+    }
+
+    byte[] toBytes() {
+        try {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(ids.size());
+            for (String string : ids.keySet()) {
+                header.writeInt(text.size());
+                text.write(string.getBytes(Charsets.UTF_8));
+            }
+            header.writeInt(text.size());
+            header.writeInt(locales.size());
+            for (LocaleTexts locale : locales) {
+                header.writeInt(locale.slots.size());
+                for (String string : locale.slots.keySet()) {
+                    header.writeInt(ids.get(string));
+                }
+            }
+            text.writeTo(header);
+            header.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The texts of one bundle, each with its index in the locale.
+     */
+    class LocaleTexts {
+        private final int index;
+        private final Map<String, Integer> slots;
+
+        private LocaleTexts(int index) {
+            this.index = index;
+            this.slots = Maps.newLinkedHashMap();
+        }
+
+        StringTable getTable() {
+            return StringTable.this;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        /**
+         * Adds the text to the locale, and to the table if it is not in it yet.
+         */
+        void add(String text) {
+            ids.computeIfAbsent(text, (t) -> ids.size());
+            slots.computeIfAbsent(text, (t) -> slots.size());
+        }
+
+        /**
+         * @return The index of the text in the locale
+         */
+        int slot(String text) {
+            Integer slot = slots.get(text);
+            checkState(slot != null, "Text not in locale %s of the table of %s: %s", index, className, text);
+            return slot;
+        }
+    }
+}
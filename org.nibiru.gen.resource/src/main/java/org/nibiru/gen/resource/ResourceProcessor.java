@@ -1,17 +1,24 @@
 package org.nibiru.gen.resource;
 
 import com.google.common.base.Charsets;
-import com.google.common.collect.FluentIterable;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
-import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.io.Files;
 import com.squareup.javapoet.*;
 import org.nibiru.gen.api.resource.Resource;
 import org.nibiru.gen.core.BaseProcessor;
+import org.nibiru.gen.core.GenerationCache;
+import org.nibiru.gen.core.Literals;
 
 import javax.annotation.Nullable;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
@@ -22,76 +29,203 @@ import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.*;
+
+import static com.google.common.base.Preconditions.checkState;
 
 @SupportedAnnotationTypes("org.nibiru.gen.api.resource.Resource")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedOptions({ResourceProcessor.ENCODING_OPTION,
+        ResourceProcessor.COMPRESSION_THRESHOLD_OPTION,
+        ResourceProcessor.STREAMING_THRESHOLD_OPTION})
 public class ResourceProcessor
         extends BaseProcessor {
+    static final String ENCODING_OPTION = "nibiru.gen.resource.encoding";
+    static final String COMPRESSION_THRESHOLD_OPTION = "nibiru.gen.resource.compressionThreshold";
+    static final String STREAMING_THRESHOLD_OPTION = "nibiru.gen.resource.streamingThreshold";
+    private static final long DEFAULT_STREAMING_THRESHOLD = 8 * 1024 * 1024;
+    private static final String SIDE_RESOURCE_EXTENSION = ".bin";
+    private static final int STATEMENTS_PER_METHOD = 1000;
+    private static final String DATA_NAME = "data";
+    private static final String LOAD_NAME = "load";
+    private static final String COMPRESSED_NAME = "compressed";
+    private static final String STREAM_NAME = "stream";
+    private static final String BUFFER_NAME = "buffer";
+    private static final String RESOURCE_NAME = "resource";
+    /**
+     * Part of the cache keys. Must change whenever the generated holders change for the same inputs.
+     */
+    private static final String CACHE_VERSION = "1";
+
     public ResourceProcessor() {
         super(Resource.class);
     }
 
     @Override
     protected Iterable<JavaFile> generate(Set<? extends Element> elements) {
-        Map<TypeElement, TypeSpec.Builder> types = Maps.newHashMap();
-        Map<String, JavaFile> byteArrayResources = Maps.newHashMap();
-        Map<String, JavaFile> stringResources = Maps.newHashMap();
+        Map<TypeElement, TypeSpec.Builder> types = Maps.newLinkedHashMap();
+        List<ResourceMethod> methods = Lists.newArrayList();
+        Map<String, File> resourceFiles = Maps.newLinkedHashMap();
         for (ExecutableElement executableElement : ElementFilter.methodsIn(elements)) {
             TypeElement typeElement = (TypeElement) executableElement.getEnclosingElement();
 
-            TypeSpec.Builder builder = types.computeIfAbsent(typeElement,
+            types.computeIfAbsent(typeElement,
                     (type) -> TypeSpec.classBuilder(type.getSimpleName()
                             + "Impl")
                             .addModifiers(Modifier.PUBLIC)
                             .addSuperinterface(ClassName.get(type)));
 
+            Resource annotation = executableElement.getAnnotation(Resource.class);
             String resourcePath = resolveRelativePaths(typeElement.getEnclosingElement()
                     .toString()
                     .replaceAll("\\.", "/")
                     + "/"
-                    + executableElement.getAnnotation(Resource.class).value());
+                    + annotation.value());
 
             TypeMirror returnType = executableElement.getReturnType();
 
-            JavaFile resource;
-            String propertysufix;
+            ResourceSpec.Kind kind;
+            String accessor;
             if (isByteArray(returnType)) {
-                resource = byteArrayResources.computeIfAbsent(resourcePath,
-                        this::buildByteResourceType);
-                propertysufix = "";
-            } else if (isString(returnType)) {
-                resource = stringResources.computeIfAbsent(resourcePath,
-                        this::buildStringResourceType);
-                propertysufix = ".toString()";
+                kind = ResourceSpec.Kind.BYTES;
+                accessor = DATA_NAME;
+            } else if (isType(returnType, InputStream.class)) {
+                kind = ResourceSpec.Kind.BYTES;
+                accessor = STREAM_NAME;
+            } else if (isType(returnType, ByteBuffer.class)) {
+                kind = ResourceSpec.Kind.BYTES;
+                accessor = BUFFER_NAME;
+            } else if (isString(returnType)
+                    || isType(returnType, CharSequence.class)) {
+                kind = ResourceSpec.Kind.STRING;
+                accessor = DATA_NAME;
             } else {
                 throw new IllegalStateException("Invalid return type for resource: "
                         + returnType
-                        + ". It must be byte[] or String");
+                        + ". It must be byte[], ByteBuffer, InputStream, String or CharSequence");
+            }
+            ResourceSpec spec = new ResourceSpec(resourcePath,
+                    kind,
+                    encoding(annotation),
+                    annotation.softReference(),
+                    Charset.forName(annotation.charset()),
+                    annotation.compression());
+            if (!resourceFiles.containsKey(resourcePath)) {
+                File resourceFile = findFile(resourcePath);
+                if (resourceFile != null) {
+                    resourceFiles.put(resourcePath, resourceFile);
+                }
+            }
+            methods.add(new ResourceMethod(executableElement, typeElement, spec, accessor));
+        }
+
+        // Files are hashed by content, so identical payloads share a holder whatever their path
+        List<HashCode> hashes = generateInParallel(resourceFiles.entrySet(),
+                (e) -> hash(e.getKey(), e.getValue()));
+        Map<String, HashCode> contents = Maps.newHashMap();
+        int n = 0;
+        for (String path : resourceFiles.keySet()) {
+            contents.put(path, hashes.get(n++));
+        }
+
+        Map<String, ResourceSpec> holders = Maps.newLinkedHashMap();
+        Multimap<String, TypeElement> origins = LinkedHashMultimap.create();
+        for (ResourceMethod method : methods) {
+            HashCode content = contents.get(method.spec.getPath());
+            if (content != null) {
+                method.spec = method.spec.withContent(content);
+                // The holder goes to the package of the first path, so it does not depend on method order
+                holders.merge(method.spec.getHolderName(),
+                        method.spec,
+                        (a, b) -> a.getPath().compareTo(b.getPath()) <= 0 ? a : b);
+                origins.put(method.spec.getHolderName(), method.type);
+            }
+        }
+        for (ResourceMethod method : methods) {
+            HashCode content = contents.get(method.spec.getPath());
+            buildResourceMethod(method.element,
+                    types.get(method.type),
+                    content != null ? holders.get(method.spec.getHolderName()) : null,
+                    method.accessor);
+        }
+
+        for (ResourceSpec spec : holders.values()) {
+            File resourceFile = resourceFiles.get(spec.getPath());
+            if (isStreamed(resourceFile)) {
+                writeSideResource(spec, resourceFile, origins.get(spec.getHolderName()));
             }
-            buildResourceMethod(executableElement,
-                    builder,
-                    resource.typeSpec,
-                    resourcePath,
-                    propertysufix);
         }
 
-        return FluentIterable.concat(types.entrySet()
-                        .stream()
-                        .map(e -> buildJavaFile(e.getKey(),
-                                e.getValue()))
-                        .collect(Collectors.toList()),
-                byteArrayResources.values(),
-                stringResources.values())
-                .filter(Objects::nonNull)
-                .toList();
+        // Reading and encoding resources is independent for each holder
+        GenerationCache cache = cache();
+        List<String> sources = generateInParallel(holders.values(),
+                (spec) -> buildResourceSource(spec, resourceFiles.get(spec.getPath()), cache));
+        n = 0;
+        for (ResourceSpec spec : holders.values()) {
+            // A holder may be shared by several types, and must be regenerated when any of them changes
+            writeSource(spec.getPackage() + "." + spec.getHolderName(),
+                    sources.get(n++),
+                    origins.get(spec.getHolderName()));
+        }
+
+        return types.entrySet()
+                .stream()
+                .map(e -> buildJavaFile(e.getKey(),
+                        e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private HashCode hash(String path, File resourceFile) {
+        try {
+            recordInput(path, resourceFile.length());
+            return Files.asByteSource(resourceFile)
+                    .hash(Hashing.sha256());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String buildResourceSource(ResourceSpec spec,
+                                       File resourceFile,
+                                       @Nullable GenerationCache cache) {
+        String key = cache != null
+                ? GenerationCache.keyBuilder()
+                .putString(CACHE_VERSION, Charsets.UTF_8)
+                .putString(spec.contentKey(), Charsets.UTF_8)
+                .putString(spec.getPackage(), Charsets.UTF_8)
+                .putBoolean(isStreamed(resourceFile))
+                .putString(option(COMPRESSION_THRESHOLD_OPTION, ""), Charsets.UTF_8)
+                .hash()
+                .toString()
+                : null;
+        String source = key != null
+                ? cache.get(key)
+                : null;
+        if (source == null) {
+            if (!isStreamed(resourceFile)) {
+                recordInput(spec.getPath(), resourceFile.length());
+            }
+            source = timed(spec.getPath(),
+                    () -> buildResourceType(spec, resourceFile).toString());
+            if (key != null) {
+                cache.put(key, source);
+            }
+        }
+        return source;
     }
 
     private boolean isByteArray(TypeMirror type) {
@@ -100,133 +234,388 @@ public class ResourceProcessor
                 .getKind() == TypeKind.BYTE;
     }
 
-    private JavaFile buildByteResourceType(String resourcePath) {
-        File resourceFile = findFile(resourcePath);
-        if (resourceFile != null) {
-            try (InputStream in = new FileInputStream(resourceFile)) {
-                TypeSpec.Builder builder = TypeSpec.classBuilder("b" + Hashing.sha256()
-                        .hashString(resourceFile.getName(), Charsets.UTF_8))
-                        .addModifiers(Modifier.PUBLIC);
-
-                builder.addField(FieldSpec.builder(TypeName.get(byte[].class),
-                        "data",
-                        Modifier.PUBLIC,
-                        Modifier.FINAL,
-                        Modifier.STATIC)
-                        .initializer("new byte[" + resourceFile.length() + "]")
-                        .build());
+    private Resource.Encoding encoding(Resource annotation) {
+        return annotation.encoding() == Resource.Encoding.DEFAULT
+                ? Resource.Encoding.valueOf(option(ENCODING_OPTION, Resource.Encoding.PACKED.name())
+                .toUpperCase(Locale.ROOT))
+                : annotation.encoding();
+    }
 
+    private Resource.Compression compression(ResourceSpec spec, long size) {
+        if (spec.getCompression() == Resource.Compression.DEFAULT) {
+            String threshold = option(COMPRESSION_THRESHOLD_OPTION, null);
+            return threshold != null && size >= Long.parseLong(threshold)
+                    ? Resource.Compression.DEFLATE
+                    : Resource.Compression.NONE;
+        } else {
+            return spec.getCompression();
+        }
+    }
 
-                CodeBlock.Builder staticInit = CodeBlock.builder();
-                MethodSpec.Builder currentMethod = MethodSpec.methodBuilder("i0")
-                        .addModifiers(Modifier.STATIC)
-                        .addModifiers(Modifier.PRIVATE);
-
-                int init = 0;
-                int n = 0;
-                int size = 0;
-                for (byte b : ByteStreams.toByteArray(in)) {
-                    currentMethod.addStatement("data[" + n + "] = " + b);
-                    n++;
-                    size++;
-                    if (size > 1000) {
-                        init++;
-                        MethodSpec methodSpec = currentMethod.build();
-                        staticInit.add(methodSpec.name + "();");
-                        builder.addMethod(methodSpec);
-                        size = 0;
-                        currentMethod = MethodSpec.methodBuilder("i" + init)
-                                .addModifiers(Modifier.STATIC)
-                                .addModifiers(Modifier.PRIVATE);
-                    }
-                }
-                MethodSpec methodSpec = currentMethod.build();
-                staticInit.add(methodSpec.name + "();");
-                builder.addMethod(methodSpec);
-                builder.addStaticBlock(staticInit
+    private boolean isStreamed(File resourceFile) {
+        return resourceFile.length() >= Long.parseLong(option(STREAMING_THRESHOLD_OPTION,
+                String.valueOf(DEFAULT_STREAMING_THRESHOLD)));
+    }
+
+    private JavaFile buildResourceType(ResourceSpec spec,
+                                       File resourceFile) {
+        TypeSpec.Builder builder = TypeSpec.classBuilder(spec.getHolderName())
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
                         .build());
+        boolean bytes = spec.getKind() == ResourceSpec.Kind.BYTES;
+        addLazyAccessor(builder,
+                TypeName.get(bytes ? byte[].class : String.class),
+                spec.isSoftReference());
+        if (bytes) {
+            // Each caller gets its own position and limit, but no copy of the shared array
+            builder.addMethod(MethodSpec.methodBuilder(BUFFER_NAME)
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(ByteBuffer.class)
+                    .addStatement("return $T.wrap($N()).asReadOnlyBuffer()",
+                            ByteBuffer.class,
+                            DATA_NAME)
+                    .build());
+        }
+
+        if (isStreamed(resourceFile)) {
+            // The file is copied by writeSideResource, and never loaded at build time
+            checkState(resourceFile.length() <= Integer.MAX_VALUE,
+                    "Resource too large: %s", spec.getPath());
+            addResourceOpener(builder, spec);
+            addStream(builder,
+                    compression(spec, resourceFile.length()),
+                    bytes,
+                    CodeBlock.of("$N()", RESOURCE_NAME));
+            addStreamLoader(builder, (int) resourceFile.length(), bytes ? null : spec.getCharset());
+            return JavaFile.builder(spec.getPackage(), builder.build())
+                    .build();
+        }
 
-                return JavaFile.builder(getPackage(resourcePath), builder.build())
-                        .build();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        try (InputStream in = new FileInputStream(resourceFile)) {
+            byte[] data = ByteStreams.toByteArray(in);
+            Resource.Compression compression = compression(spec, data.length);
+            byte[] compressed = compression != Resource.Compression.NONE
+                    ? compress(data, compression)
+                    : null;
+            if (compressed != null
+                    && spec.getCompression() == Resource.Compression.DEFAULT
+                    && compressed.length >= data.length) {
+                // Not worth inflating a resource that does not get smaller
+                compression = Resource.Compression.NONE;
             }
+            if (compression == Resource.Compression.NONE) {
+                if (bytes) {
+                    addBytesMethod(builder, LOAD_NAME, data, spec.getEncoding());
+                    builder.addMethod(MethodSpec.methodBuilder(STREAM_NAME)
+                            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                            .returns(InputStream.class)
+                            .addStatement("return new $T($N())", ByteArrayInputStream.class, DATA_NAME)
+                            .build());
+                } else {
+                    addStringLoader(builder, decode(data, spec));
+                }
+            } else {
+                // Text is validated here, but stored and inflated as encoded bytes
+                if (!bytes) {
+                    decode(data, spec);
+                }
+                addBytesMethod(builder, COMPRESSED_NAME, compressed, spec.getEncoding());
+                addStream(builder,
+                        compression,
+                        bytes,
+                        CodeBlock.of("new $T($N())", ByteArrayInputStream.class, COMPRESSED_NAME));
+                addStreamLoader(builder, data.length, bytes ? null : spec.getCharset());
+            }
+
+            return JavaFile.builder(spec.getPackage(), builder.build())
+                    .build();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds a "data()" method that calls "load()" on first access and publishes the result
+     * through a volatile field. Concurrent first calls may load more than once, but every
+     * caller sees a fully initialized value without taking a lock.
+     */
+    private void addLazyAccessor(TypeSpec.Builder builder,
+                                 TypeName type,
+                                 boolean softReference) {
+        MethodSpec.Builder accessor = MethodSpec.methodBuilder(DATA_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(type);
+        if (softReference) {
+            TypeName referenceType = ParameterizedTypeName.get(ClassName.get(SoftReference.class),
+                    type);
+            builder.addField(FieldSpec.builder(referenceType,
+                    DATA_NAME,
+                    Modifier.PRIVATE,
+                    Modifier.STATIC,
+                    Modifier.VOLATILE)
+                    .build());
+            accessor.addStatement("$T reference = $N", referenceType, DATA_NAME)
+                    .addStatement("$T result = reference != null ? reference.get() : null", type)
+                    .beginControlFlow("if (result == null)")
+                    .addStatement("result = $N()", LOAD_NAME)
+                    .addStatement("$N = new $T<>(result)", DATA_NAME, SoftReference.class)
+                    .endControlFlow();
         } else {
-            return null;
+            builder.addField(FieldSpec.builder(type,
+                    DATA_NAME,
+                    Modifier.PRIVATE,
+                    Modifier.STATIC,
+                    Modifier.VOLATILE)
+                    .build());
+            accessor.addStatement("$T result = $N", type, DATA_NAME)
+                    .beginControlFlow("if (result == null)")
+                    .addStatement("result = $N()", LOAD_NAME)
+                    .addStatement("$N = result", DATA_NAME)
+                    .endControlFlow();
         }
+        builder.addMethod(accessor.addStatement("return result")
+                .build());
     }
 
-    private JavaFile buildStringResourceType(String resourcePath) {
-        File resourceFile = findFile(resourcePath);
-        if (resourceFile != null) {
-            try (InputStream in = new FileInputStream(resourceFile)) {
-                TypeSpec.Builder builder = TypeSpec.classBuilder("s" + Hashing.sha256()
-                        .hashString(resourceFile.getName(), Charsets.UTF_8))
-                        .addModifiers(Modifier.PUBLIC);
+    /**
+     * Adds a method that returns a new array with the given bytes, stored with the given encoding.
+     */
+    private void addBytesMethod(TypeSpec.Builder builder,
+                                String name,
+                                byte[] data,
+                                Resource.Encoding encoding) {
+        ParameterSpec dataParam = ParameterSpec.builder(byte[].class, DATA_NAME)
+                .build();
+        MethodSpec.Builder loader = MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(byte[].class)
+                .addStatement("$T $N = new byte[$L]", byte[].class, dataParam, data.length);
 
-                builder.addField(FieldSpec.builder(TypeName.get(StringBuilder.class),
-                        "data",
-                        Modifier.PUBLIC,
-                        Modifier.FINAL,
-                        Modifier.STATIC)
-                        .initializer("new StringBuilder()")
-                        .build());
+        if (encoding == Resource.Encoding.STATEMENTS) {
+            int n = 0;
+            int init = 0;
+            do {
+                MethodSpec.Builder method = initMethod(init++, dataParam);
+                for (int size = 0; size < STATEMENTS_PER_METHOD && n < data.length; size++, n++) {
+                    method.addStatement("$N[$L] = $L", dataParam, n, data[n]);
+                }
+                addInitMethod(builder, loader, method, dataParam);
+            } while (n < data.length);
+        } else {
+            // Each byte is stored as a char in the 0-255 range, and String.getBytes(int, int, byte[], int)
+            // copies the low byte of every char back in a single call per constant.
+            MethodSpec.Builder method = initMethod(0, dataParam)
+                    .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                            .addMember("value", "$S", "deprecation")
+                            .build());
+            int offset = 0;
+            for (String chunk : Literals.split(Literals.latin1(data, 0, data.length))) {
+                method.addStatement("$L.getBytes(0, $L, $N, $L)",
+                        Literals.literal(chunk),
+                        chunk.length(),
+                        dataParam,
+                        offset);
+                offset += chunk.length();
+            }
+            addInitMethod(builder, loader, method, dataParam);
+        }
 
+        builder.addMethod(loader.addStatement("return $N", dataParam)
+                .build());
+    }
 
-                CodeBlock.Builder staticInit = CodeBlock.builder();
-                MethodSpec.Builder currentMethod = MethodSpec.methodBuilder("i0")
-                        .addModifiers(Modifier.STATIC)
-                        .addModifiers(Modifier.PRIVATE);
-
-                int init = 0;
-                int n = 0;
-                int size = 0;
-                for (char b : BaseEncoding.base64()
-                        .encode(ByteStreams.toByteArray(in))
-                        .toCharArray()) {
-                    currentMethod.addStatement("data.append('" + b + "')");
-                    n++;
-                    size++;
-                    if (size > 1000) {
-                        init++;
-                        MethodSpec methodSpec = currentMethod.build();
-                        staticInit.add(methodSpec.name + "();");
-                        builder.addMethod(methodSpec);
-                        size = 0;
-                        currentMethod = MethodSpec.methodBuilder("i" + init)
-                                .addModifiers(Modifier.STATIC)
-                                .addModifiers(Modifier.PRIVATE);
-                    }
-                }
-                MethodSpec methodSpec = currentMethod.build();
-                staticInit.add(methodSpec.name + "();");
-                builder.addMethod(methodSpec);
-                builder.addStaticBlock(staticInit
-                        .build());
+    private static byte[] compress(byte[] data, Resource.Compression compression) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = compressing(compressed, compression)) {
+            out.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static OutputStream compressing(OutputStream out,
+                                            Resource.Compression compression) throws IOException {
+        switch (compression) {
+            case GZIP:
+                return new GZIPOutputStream(out);
+            case DEFLATE:
+                return new DeflaterOutputStream(out, new Deflater(Deflater.BEST_COMPRESSION));
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Adds a "stream()" method that reads the given source, inflating it while it is read if
+     * it is compressed, without materializing the whole resource.
+     */
+    private void addStream(TypeSpec.Builder builder,
+                           Resource.Compression compression,
+                           boolean isPublic,
+                           CodeBlock source) {
+        MethodSpec.Builder stream = MethodSpec.methodBuilder(STREAM_NAME)
+                .addModifiers(isPublic ? Modifier.PUBLIC : Modifier.PRIVATE, Modifier.STATIC)
+                .returns(InputStream.class);
+        if (compression == Resource.Compression.GZIP) {
+            stream.beginControlFlow("try")
+                    .addStatement("return new $T($L)", GZIPInputStream.class, source)
+                    .nextControlFlow("catch ($T e)", IOException.class)
+                    .addStatement("throw new $T(e)", UncheckedIOException.class)
+                    .endControlFlow();
+        } else if (compression == Resource.Compression.DEFLATE) {
+            stream.addStatement("return new $T($L)", InflaterInputStream.class, source);
+        } else {
+            stream.addStatement("return $L", source);
+        }
+        builder.addMethod(stream.build());
+    }
+
+    private void addStreamLoader(TypeSpec.Builder builder,
+                                 int size,
+                                 @Nullable Charset charset) {
+        // The size is known at build time, so the array is allocated only once
+        builder.addMethod(MethodSpec.methodBuilder(LOAD_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(charset != null ? String.class : byte[].class)
+                .beginControlFlow("try ($T in = $N())", InputStream.class, STREAM_NAME)
+                .addStatement("byte[] data = new byte[$L]", size)
+                .addStatement("int n = 0")
+                .beginControlFlow("while (n < data.length)")
+                .addStatement("int read = in.read(data, n, data.length - n)")
+                .beginControlFlow("if (read < 0)")
+                .addStatement("throw new $T()", EOFException.class)
+                .endControlFlow()
+                .addStatement("n += read")
+                .endControlFlow()
+                .addCode(charset != null
+                        ? CodeBlock.builder()
+                        .addStatement("return new $T(data, $T.forName($S))",
+                                String.class,
+                                Charset.class,
+                                charset.name())
+                        .build()
+                        : CodeBlock.builder()
+                        .addStatement("return data")
+                        .build())
+                .nextControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T(e)", UncheckedIOException.class)
+                .endControlFlow()
+                .build());
+    }
+
+    /**
+     * Adds a "resource()" method that opens the side resource next to the holder class.
+     */
+    private void addResourceOpener(TypeSpec.Builder builder,
+                                   ResourceSpec spec) {
+        String name = spec.getHolderName() + SIDE_RESOURCE_EXTENSION;
+        builder.addMethod(MethodSpec.methodBuilder(RESOURCE_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(InputStream.class)
+                .addStatement("$T in = $T.class.getResourceAsStream($S)",
+                        InputStream.class,
+                        ClassName.get(spec.getPackage(), spec.getHolderName()),
+                        name)
+                .beginControlFlow("if (in == null)")
+                .addStatement("throw new $T($S)",
+                        IllegalStateException.class,
+                        "Resource not found: " + name)
+                .endControlFlow()
+                .addStatement("return in")
+                .build());
+    }
 
-                return JavaFile.builder(getPackage(resourcePath), builder.build())
-                        .build();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+    /**
+     * Copies a resource file to the class output, next to its holder class, with a fixed size
+     * buffer, so memory use does not depend on the size of the file.
+     */
+    private void writeSideResource(ResourceSpec spec,
+                                   File resourceFile,
+                                   Collection<? extends Element> originatingElements) {
+        try {
+            FileObject sideResource = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT,
+                            spec.getPackage(),
+                            spec.getHolderName() + SIDE_RESOURCE_EXTENSION,
+                            originatingElements.toArray(new Element[0]));
+            Resource.Compression compression = compression(spec, resourceFile.length());
+            CountingOutputStream written = new CountingOutputStream(sideResource.openOutputStream());
+            try (InputStream in = new FileInputStream(resourceFile);
+                 OutputStream out = compressing(written, compression)) {
+                recordInput(spec.getPath(), ByteStreams.copy(in, out));
             }
+            recordOutput(spec.getPackage() + "." + spec.getHolderName() + SIDE_RESOURCE_EXTENSION,
+                    written.getCount());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String decode(byte[] data, ResourceSpec spec) {
+        try {
+            return spec.getCharset()
+                    .newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(data))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            throw new IllegalStateException("Resource "
+                    + spec.getPath()
+                    + " is not valid "
+                    + spec.getCharset()
+                    + " text", e);
+        }
+    }
+
+    private void addStringLoader(TypeSpec.Builder builder,
+                                 String text) {
+        // The text is decoded at build time and stored as literals, so it is only
+        // concatenated once, in a builder that already has the final capacity.
+        List<String> chunks = Literals.split(text);
+        MethodSpec.Builder loader = MethodSpec.methodBuilder(LOAD_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(String.class);
+        if (chunks.size() == 1) {
+            loader.addStatement("return $L", Literals.literal(text));
         } else {
-            return null;
+            CodeBlock.Builder expression = CodeBlock.builder()
+                    .add("return new $T($L)", StringBuilder.class, text.length());
+            for (String chunk : chunks) {
+                expression.add("\n.append($L)", Literals.literal(chunk));
+            }
+            loader.addStatement(expression.add("\n.toString()")
+                    .build());
         }
+        builder.addMethod(loader.build());
+    }
+
+    private static MethodSpec.Builder initMethod(int n, ParameterSpec dataParam) {
+        return MethodSpec.methodBuilder("i" + n)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(dataParam);
+    }
+
+    private static void addInitMethod(TypeSpec.Builder builder,
+                                      MethodSpec.Builder loader,
+                                      MethodSpec.Builder method,
+                                      ParameterSpec dataParam) {
+        MethodSpec methodSpec = method.build();
+        builder.addMethod(methodSpec);
+        loader.addStatement("$N($N)", methodSpec, dataParam);
     }
 
     private void buildResourceMethod(ExecutableElement element,
                                      TypeSpec.Builder builder,
-                                     @Nullable TypeSpec resourceType,
-                                     @Nullable String resourcePath,
-                                     String propertySufix) {
+                                     @Nullable ResourceSpec spec,
+                                     String accessor) {
         MethodSpec.Builder methodBuilder = buildMethod(element);
 
-        if (resourceType != null && resourcePath != null) {
-            builder.addMethod(methodBuilder.addStatement("return "
-                    + getPackage(resourcePath) + "."
-                    + resourceType.name
-                    + ".data"
-                    + propertySufix)
+        if (spec != null) {
+            builder.addMethod(methodBuilder.addStatement("return $T.$N()",
+                    ClassName.get(spec.getPackage(), spec.getHolderName()),
+                    accessor)
                     .build());
         } else {
             builder.addMethod(methodBuilder.addStatement("return null")
@@ -234,9 +623,20 @@ public class ResourceProcessor
         }
     }
 
-    private String getPackage(String path) {
-        return path
-                .substring(0, path.lastIndexOf('/'))
-                .replaceAll("/", ".");
+    private static class ResourceMethod {
+        private final ExecutableElement element;
+        private final TypeElement type;
+        private ResourceSpec spec;
+        private final String accessor;
+
+        private ResourceMethod(ExecutableElement element,
+                               TypeElement type,
+                               ResourceSpec spec,
+                               String accessor) {
+            this.element = element;
+            this.type = type;
+            this.spec = spec;
+            this.accessor = accessor;
+        }
     }
 }
@@ -0,0 +1,120 @@
+package org.nibiru.gen.resource;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.nibiru.gen.api.resource.Resource;
+
+import javax.annotation.Nullable;
+import java.nio.charset.Charset;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Everything that affects the generated holder class of a resource.
+ * Once the content hash of the file is known, specs with equal {@link #contentKey()} share the
+ * same holder, even if they point to different files.
+ */
+class ResourceSpec {
+    enum Kind {
+        BYTES("b"),
+        STRING("s");
+
+        private final String prefix;
+
+        Kind(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    private final String path;
+    private final Kind kind;
+    private final Resource.Encoding encoding;
+    private final boolean softReference;
+    private final Charset charset;
+    private final Resource.Compression compression;
+    @Nullable
+    private final HashCode content;
+
+    ResourceSpec(String path,
+                 Kind kind,
+                 Resource.Encoding encoding,
+                 boolean softReference,
+                 Charset charset,
+                 Resource.Compression compression) {
+        this(path, kind, encoding, softReference, charset, compression, null);
+    }
+
+    private ResourceSpec(String path,
+                         Kind kind,
+                         Resource.Encoding encoding,
+                         boolean softReference,
+                         Charset charset,
+                         Resource.Compression compression,
+                         @Nullable HashCode content) {
+        this.path = checkNotNull(path);
+        this.kind = checkNotNull(kind);
+        this.encoding = checkNotNull(encoding);
+        this.softReference = softReference;
+        this.charset = checkNotNull(charset);
+        this.compression = checkNotNull(compression);
+        this.content = content;
+    }
+
+    ResourceSpec withContent(HashCode content) {
+        return new ResourceSpec(path, kind, encoding, softReference, charset, compression,
+                checkNotNull(content));
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    Resource.Encoding getEncoding() {
+        return encoding;
+    }
+
+    boolean isSoftReference() {
+        return softReference;
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    Resource.Compression getCompression() {
+        return compression;
+    }
+
+    String getPackage() {
+        return path
+                .substring(0, path.lastIndexOf('/'))
+                .replaceAll("/", ".");
+    }
+
+    String getHolderName() {
+        return kind.prefix + Hashing.sha256()
+                .hashString(contentKey(), Charsets.UTF_8);
+    }
+
+    /**
+     * Identifies the holder, from the options and the content of the file, but not its path.
+     */
+    String contentKey() {
+        checkState(content != null, "Content of %s not hashed yet", path);
+        return options()
+                + ":" + content;
+    }
+
+    private String options() {
+        return kind
+                + ":" + (kind == Kind.BYTES ? encoding : charset.name())
+                + ":" + (softReference ? "soft" : "strong")
+                + ":" + compression;
+    }
+}
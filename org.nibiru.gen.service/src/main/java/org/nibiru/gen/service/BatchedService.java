@@ -0,0 +1,355 @@
+package org.nibiru.gen.service;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+import org.nibiru.async.core.api.function.Callback;
+import org.nibiru.async.core.api.promise.Deferred;
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.Batched;
+import org.nibiru.gen.api.service.Batcher;
+import org.nibiru.mobile.core.api.http.HttpMethod;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The parts of the code generated for a {@link Batched} service: the {@code FooBatch} messages, the
+ * batching in {@code FooImpl}, and the {@code FooUnbatcher} that answers batches on the server.
+ * <p>
+ * A call is sent as its arguments rather than as an HTTP request, in a field named after its method,
+ * and its result comes back in a field of the same name, so the serializer of the
+ * {@link org.nibiru.mobile.core.api.service.RemoteService} knows the type of each one.
+ */
+class BatchedService {
+    static final String BATCH_SUFFIX = "Batch";
+    static final String UNBATCHER_SUFFIX = "Unbatcher";
+    static final String SCHEDULER_NAME = "batchScheduler";
+    private static final String BATCHER_NAME = "batcher";
+    private static final String SEND_BATCH_NAME = "sendBatch";
+    private static final String COMPLETE_BATCH_NAME = "completeBatch";
+    private static final String COMPLETE_CALL_NAME = "completeCall";
+    private static final String METHOD_FIELD = "method";
+    private static final String ERROR_FIELD = "error";
+    private static final String ARGS_SUFFIX = "Args";
+
+    private final TypeElement type;
+    private final Batched batched;
+    private final ClassName batchName;
+    private final ClassName requestName;
+    private final ClassName responseName;
+    private final ClassName callName;
+    private final ClassName resultName;
+    private final TypeName deferredType;
+    private final List<Call> calls;
+
+    BatchedService(TypeElement type, Batched batched) {
+        this.type = checkNotNull(type);
+        this.batched = checkNotNull(batched);
+        checkState(batched.maxSize() > 0, "Batch size of %s must be positive", type);
+        ClassName typeName = ClassName.get(type);
+        this.batchName = typeName.peerClass(typeName.simpleName() + BATCH_SUFFIX);
+        this.requestName = batchName.nestedClass("Request");
+        this.responseName = batchName.nestedClass("Response");
+        this.callName = batchName.nestedClass("Call");
+        this.resultName = batchName.nestedClass("Result");
+        this.deferredType = ParameterizedTypeName.get(ClassName.get(Deferred.class),
+                WildcardTypeName.subtypeOf(Object.class),
+                ClassName.get(Exception.class));
+        this.calls = Lists.newArrayList();
+    }
+
+    /**
+     * Adds the fields and the constructor statement that the batching methods of the client need.
+     */
+    void addClientMembers(TypeSpec.Builder builder, MethodSpec.Builder constructorBuilder) {
+        builder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Batcher.class), callName, deferredType),
+                BATCHER_NAME,
+                Modifier.PRIVATE,
+                Modifier.FINAL)
+                .build());
+        constructorBuilder.addParameter(ParameterSpec.builder(ScheduledExecutorService.class, SCHEDULER_NAME)
+                .addAnnotation(Nullable.class)
+                .build())
+                .addStatement("this.$N = new $T<>($L, $LL, $N, this::$N)",
+                        BATCHER_NAME,
+                        Batcher.class,
+                        batched.maxSize(),
+                        batched.windowMillis(),
+                        SCHEDULER_NAME,
+                        SEND_BATCH_NAME);
+    }
+
+    /**
+     * @param responseType The type of the value of the promise returned by the method
+     * @return The client method, which adds a call to the current batch
+     */
+    MethodSpec buildClientMethod(ExecutableElement element,
+                                 MethodSpec.Builder methodBuilder,
+                                 DeclaredType responseType) {
+        Call call = new Call(element, TypeName.get(responseType));
+        for (Call other : calls) {
+            checkState(!other.name.equals(call.name),
+                    "Methods of batched service %s can not be overloaded: %s", type, call.name);
+        }
+        checkState(!call.name.equals(METHOD_FIELD) && !call.name.equals(ERROR_FIELD),
+                "Methods of batched service %s can not be named %s", type, call.name);
+        calls.add(call);
+
+        NameAllocator names = new NameAllocator();
+        for (VariableElement param : element.getParameters()) {
+            names.newName(param.getSimpleName().toString());
+        }
+        String callVariable = names.newName("call");
+        String deferredVariable = names.newName("deferred");
+        methodBuilder.addStatement("$T $N = new $T()", callName, callVariable, callName)
+                .addStatement("$N.$N = $S", callVariable, METHOD_FIELD, call.name);
+        if (call.argsName != null) {
+            methodBuilder.addStatement("$N.$N = new $T()", callVariable, call.name, call.argsName);
+            for (VariableElement param : element.getParameters()) {
+                methodBuilder.addStatement("$N.$N.$N = $N",
+                        callVariable,
+                        call.name,
+                        param.getSimpleName().toString(),
+                        param.getSimpleName().toString());
+            }
+        }
+        return methodBuilder.addStatement("$T $N = $T.defer()",
+                ParameterizedTypeName.get(ClassName.get(Deferred.class), call.responseType, ClassName.get(Exception.class)),
+                deferredVariable,
+                Deferred.class)
+                .addStatement("$N.add($N, $N)", BATCHER_NAME, callVariable, deferredVariable)
+                .addStatement("return $N.promise()", deferredVariable)
+                .build();
+    }
+
+    /**
+     * Adds the methods that send the batches and complete their calls, once all the client methods are built.
+     */
+    void addSendMethods(TypeSpec.Builder builder) {
+        TypeName callsType = ParameterizedTypeName.get(ClassName.get(List.class), callName);
+        TypeName deferredsType = ParameterizedTypeName.get(ClassName.get(List.class), deferredType);
+        builder.addMethod(MethodSpec.methodBuilder(SEND_BATCH_NAME)
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(callsType, "calls")
+                .addParameter(deferredsType, "deferreds")
+                .addStatement("$T request = new $T()", requestName, requestName)
+                .addStatement("request.calls = calls")
+                // Batches are sent from the scheduler, which would swallow an exception and leave the calls pending
+                .beginControlFlow("try")
+                .addCode("service.invoke(requestBuilder($S, request, $T.$L).build(), $T.class)\n",
+                        batched.path(), HttpMethod.class, HttpMethod.POST, responseName)
+                .addCode("$>$>.then((response) -> $N(calls, deferreds, response))\n", COMPLETE_BATCH_NAME)
+                .addCode(".capture((exception) -> {\n$>")
+                .beginControlFlow("for ($T deferred : deferreds)", deferredType)
+                .addStatement("deferred.reject(exception)")
+                .endControlFlow()
+                .addCode("$<});\n$<$<")
+                .nextControlFlow("catch ($T e)", RuntimeException.class)
+                .beginControlFlow("for ($T deferred : deferreds)", deferredType)
+                .addStatement("deferred.reject(e)")
+                .endControlFlow()
+                .endControlFlow()
+                .build());
+
+        MethodSpec.Builder completeBatch = MethodSpec.methodBuilder(COMPLETE_BATCH_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(callsType, "calls")
+                .addParameter(deferredsType, "deferreds")
+                .addParameter(responseName, "response")
+                .beginControlFlow("for (int n = 0; n < calls.size(); n++)")
+                .addStatement("$T result = response.results != null && n < response.results.size()\n"
+                        + "? response.results.get(n)\n"
+                        + ": null", resultName)
+                .beginControlFlow("if (result == null)")
+                .addStatement("deferreds.get(n).reject(new $T($S + n))", Exception.class, "No result for call ")
+                .nextControlFlow("else if (result.$N != null)", ERROR_FIELD)
+                .addStatement("deferreds.get(n).reject(new $T(result.$N))", Exception.class, ERROR_FIELD)
+                .nextControlFlow("else")
+                .beginControlFlow("switch (calls.get(n).$N)", METHOD_FIELD);
+        for (Call call : calls) {
+            completeBatch.addCode("case $S:\n$>", call.name)
+                    .addStatement("$N(deferreds.get(n), result.$N)", COMPLETE_CALL_NAME, call.name)
+                    .addStatement("break")
+                    .addCode("$<");
+        }
+        builder.addMethod(completeBatch.endControlFlow()
+                .endControlFlow()
+                .endControlFlow()
+                .build());
+
+        builder.addMethod(MethodSpec.methodBuilder(COMPLETE_CALL_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addTypeVariable(TypeVariableName.get("T"))
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "unchecked")
+                        .build())
+                .addParameter(deferredType, "deferred")
+                .addParameter(TypeVariableName.get("T"), "value")
+                .addStatement("(($T) deferred).resolve(value)",
+                        ParameterizedTypeName.get(ClassName.get(Deferred.class),
+                                TypeVariableName.get("T"),
+                                ClassName.get(Exception.class)))
+                .build());
+    }
+
+    /**
+     * @return The {@code FooBatch} class, with the request, call, response and result messages
+     */
+    TypeSpec.Builder buildBatchClass() {
+        TypeSpec.Builder call = messageClass(callName)
+                .addField(String.class, METHOD_FIELD, Modifier.PUBLIC);
+        TypeSpec.Builder result = messageClass(resultName)
+                .addField(FieldSpec.builder(String.class, ERROR_FIELD, Modifier.PUBLIC)
+                        .addAnnotation(Nullable.class)
+                        .build());
+        TypeSpec.Builder batch = TypeSpec.classBuilder(batchName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build())
+                .addType(messageClass(requestName)
+                        .addField(ParameterizedTypeName.get(ClassName.get(List.class), callName), "calls", Modifier.PUBLIC)
+                        .build())
+                .addType(messageClass(responseName)
+                        .addField(ParameterizedTypeName.get(ClassName.get(List.class), resultName), "results", Modifier.PUBLIC)
+                        .build());
+        for (Call c : calls) {
+            if (c.argsName != null) {
+                call.addField(c.argsName, c.name, Modifier.PUBLIC);
+                TypeSpec.Builder args = messageClass(c.argsName);
+                for (VariableElement param : c.element.getParameters()) {
+                    args.addField(TypeName.get(param.asType()), param.getSimpleName().toString(), Modifier.PUBLIC);
+                }
+                batch.addType(args.build());
+            }
+            result.addField(c.responseType, c.name, Modifier.PUBLIC);
+        }
+        return batch.addType(call.build())
+                .addType(result.build());
+    }
+
+    /**
+     * @return The {@code FooUnbatcher} class, which calls an implementation of the service for each call of a batch
+     */
+    TypeSpec.Builder buildUnbatcherClass() {
+        ClassName typeName = ClassName.get(type);
+        TypeName promiseType = ParameterizedTypeName.get(ClassName.get(Promise.class), responseName, ClassName.get(Exception.class));
+        TypeName responseDeferredType = ParameterizedTypeName.get(ClassName.get(Deferred.class), responseName, ClassName.get(Exception.class));
+
+        MethodSpec.Builder unbatch = MethodSpec.methodBuilder("unbatch")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(promiseType)
+                .addParameter(requestName, "request")
+                .addStatement("$T calls = request.calls != null\n? request.calls\n: $T.emptyList()",
+                        ParameterizedTypeName.get(ClassName.get(List.class), callName), Collections.class)
+                .addStatement("$T response = new $T()", responseName, responseName)
+                .addStatement("response.results = new $T<>(calls.size())", ArrayList.class)
+                .addStatement("$T deferred = $T.defer()", responseDeferredType, Deferred.class)
+                .addComment("One more than the calls, so the response is only resolved once all of them are made")
+                .addStatement("$T pending = new $T(calls.size() + 1)", AtomicInteger.class, AtomicInteger.class)
+                .beginControlFlow("for ($T call : calls)", callName)
+                .addStatement("$T result = new $T()", resultName, resultName)
+                .addStatement("response.results.add(result)")
+                .addCode("$T<$T> error = (exception) -> {\n$>", Callback.class, Exception.class)
+                .addStatement("result.$N = $T.valueOf(exception.getMessage())", ERROR_FIELD, String.class)
+                .addStatement("complete(pending, deferred, response)")
+                .addCode("$<};\n")
+                .beginControlFlow("try")
+                .beginControlFlow("switch ($T.valueOf(call.$N))", String.class, METHOD_FIELD);
+        for (Call call : calls) {
+            List<CodeBlock> args = Lists.newArrayList();
+            for (VariableElement param : call.element.getParameters()) {
+                args.add(CodeBlock.of("call.$N.$N", call.name, param.getSimpleName().toString()));
+            }
+            unbatch.addCode("case $S:\n$>", call.name)
+                    .addCode("service.$N($L)\n$>$>.then((value) -> {\n$>", call.name, CodeBlock.join(args, ", "))
+                    .addStatement("result.$N = value", call.name)
+                    .addStatement("complete(pending, deferred, response)")
+                    .addCode("$<})\n.capture(error);\n$<$<")
+                    .addStatement("break")
+                    .addCode("$<");
+        }
+        unbatch.addCode("default:\n$>")
+                .addStatement("error.apply(new $T($S + call.$N))",
+                        IllegalArgumentException.class, "Unknown method ", METHOD_FIELD)
+                .addCode("$<")
+                .endControlFlow()
+                .nextControlFlow("catch ($T e)", RuntimeException.class)
+                .addStatement("error.apply(e)")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("complete(pending, deferred, response)")
+                .addStatement("return deferred.promise()");
+
+        return TypeSpec.classBuilder(typeName.simpleName() + UNBATCHER_SUFFIX)
+                .addModifiers(Modifier.PUBLIC)
+                .addField(typeName, "service", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addAnnotation(Inject.class)
+                        .addParameter(typeName, "service")
+                        .addStatement("this.service = $T.checkNotNull(service)",
+                                Preconditions.class)
+                        .build())
+                .addMethod(unbatch.build())
+                .addMethod(MethodSpec.methodBuilder("complete")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(AtomicInteger.class, "pending")
+                        .addParameter(responseDeferredType, "deferred")
+                        .addParameter(responseName, "response")
+                        .beginControlFlow("if (pending.decrementAndGet() == 0)")
+                        .addStatement("deferred.resolve(response)")
+                        .endControlFlow()
+                        .build());
+    }
+
+    private static TypeSpec.Builder messageClass(ClassName name) {
+        return TypeSpec.classBuilder(name)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC);
+    }
+
+    /**
+     * A method of the service, and the class of its arguments in the batch messages, if it has any.
+     */
+    private class Call {
+        private final ExecutableElement element;
+        private final String name;
+        private final TypeName responseType;
+        @Nullable
+        private final ClassName argsName;
+
+        private Call(ExecutableElement element, TypeName responseType) {
+            this.element = element;
+            this.name = element.getSimpleName().toString();
+            this.responseType = responseType;
+            this.argsName = element.getParameters().isEmpty()
+                    ? null
+                    : batchName.nestedClass(Character.toUpperCase(name.charAt(0)) + name.substring(1) + ARGS_SUFFIX);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.nibiru.gen.service;
+
+import com.google.common.collect.Maps;
+import com.squareup.javapoet.CodeBlock;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A property that generated code sets on an object: a public field, or a setter, which takes the place
+ * of the field of the same name.
+ */
+class BeanProperty {
+    private static final String SETTER_PREFIX = "set";
+
+    private final String member;
+    private final boolean setter;
+    private final TypeMirror type;
+
+    private BeanProperty(String member, boolean setter, TypeMirror type) {
+        this.member = checkNotNull(member);
+        this.setter = setter;
+        this.type = checkNotNull(type);
+    }
+
+    /**
+     * @return The public non-final fields and the setters declared by the class, by property name, sorted
+     */
+    static Map<String, BeanProperty> settable(Element element) {
+        Map<String, BeanProperty> properties = Maps.newTreeMap();
+        for (VariableElement field : ElementFilter.fieldsIn(element.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.PUBLIC)
+                    && !field.getModifiers().contains(Modifier.STATIC)
+                    && !field.getModifiers().contains(Modifier.FINAL)) {
+                String name = field.getSimpleName().toString();
+                properties.put(name, new BeanProperty(name, false, field.asType()));
+            }
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+            String name = method.getSimpleName().toString();
+            if (method.getModifiers().contains(Modifier.PUBLIC)
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && method.getParameters().size() == 1
+                    && name.startsWith(SETTER_PREFIX)
+                    && name.length() > SETTER_PREFIX.length()) {
+                String property = Character.toLowerCase(name.charAt(SETTER_PREFIX.length()))
+                        + name.substring(SETTER_PREFIX.length() + 1);
+                properties.put(property, new BeanProperty(name, true, method.getParameters().get(0).asType()));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * @return true if the element is a concrete class with a public constructor without parameters
+     */
+    static boolean isInstantiable(Element element) {
+        return element.getKind() == ElementKind.CLASS
+                && !element.getModifiers().contains(Modifier.ABSTRACT)
+                && ElementFilter.constructorsIn(element.getEnclosedElements())
+                .stream()
+                .anyMatch((c) -> c.getModifiers().contains(Modifier.PUBLIC) && c.getParameters().isEmpty());
+    }
+
+    TypeMirror getType() {
+        return type;
+    }
+
+    /**
+     * @return The statement that sets the property of the object to the value
+     */
+    CodeBlock set(String object, CodeBlock value) {
+        return setter
+                ? CodeBlock.of("$N.$N($L)", object, member, value)
+                : CodeBlock.of("$N.$N = $L", object, member, value);
+    }
+}
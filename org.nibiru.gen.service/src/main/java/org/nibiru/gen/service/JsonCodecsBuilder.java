@@ -0,0 +1,469 @@
+package org.nibiru.gen.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import org.nibiru.gen.api.service.JsonReader;
+import org.nibiru.gen.api.service.JsonWriter;
+
+import javax.annotation.Nullable;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Builds the {@code FooJsonCodecs} class of a {@link org.nibiru.gen.api.service.JsonCodecs} service,
+ * with a read and a write method for each type its requests and responses are made of.
+ * <p>
+ * Strings, primitives and their boxes, enums (by name), lists, sets, iterators and maps with string
+ * keys are supported, as are classes with a public no-argument constructor, whose properties are their public
+ * fields and their public getter and setter pairs. Null properties are not written, and unknown ones
+ * are skipped when read.
+ */
+class JsonCodecsBuilder {
+    static final String CODECS_SUFFIX = "JsonCodecs";
+    private static final String READ_PREFIX = "read";
+    private static final String WRITE_PREFIX = "write";
+    private static final Map<TypeKind, String> PRIMITIVE_READS = ImmutableMap.<TypeKind, String>builder()
+            .put(TypeKind.BOOLEAN, "reader.nextBoolean()")
+            .put(TypeKind.BYTE, "reader.nextByte()")
+            .put(TypeKind.SHORT, "reader.nextShort()")
+            .put(TypeKind.INT, "reader.nextInt()")
+            .put(TypeKind.LONG, "reader.nextLong()")
+            .put(TypeKind.FLOAT, "(float) reader.nextDouble()")
+            .put(TypeKind.DOUBLE, "reader.nextDouble()")
+            .put(TypeKind.CHAR, "reader.nextChar()")
+            .build();
+    private static final Set<String> LIST_TYPES = ImmutableSet.of(Iterable.class.getName(),
+            "java.util.Collection",
+            "java.util.List",
+            "java.util.ArrayList");
+    private static final Set<String> SET_TYPES = ImmutableSet.of("java.util.Set",
+            "java.util.HashSet",
+            "java.util.LinkedHashSet");
+    private static final Set<String> SORTED_SET_TYPES = ImmutableSet.of("java.util.SortedSet",
+            "java.util.NavigableSet",
+            "java.util.TreeSet");
+    private static final Set<String> MAP_TYPES = ImmutableSet.of("java.util.Map",
+            "java.util.HashMap",
+            "java.util.LinkedHashMap");
+
+    private final ClassName className;
+    private final Types types;
+    private final Elements elements;
+    private final NameAllocator names;
+    private final Map<String, String> suffixes;
+    private final List<MethodSpec> methods;
+
+    JsonCodecsBuilder(ClassName className, Types types, Elements elements) {
+        this.className = checkNotNull(className);
+        this.types = checkNotNull(types);
+        this.elements = checkNotNull(elements);
+        this.names = new NameAllocator();
+        this.suffixes = Maps.newHashMap();
+        this.methods = Lists.newArrayList();
+    }
+
+    ClassName getClassName() {
+        return className;
+    }
+
+    /**
+     * @return A {@code Function<JsonReader, T>} that reads the type
+     */
+    CodeBlock reader(TypeMirror type) {
+        return CodeBlock.of("$T::$N", className, READ_PREFIX + suffix(boxed(type)));
+    }
+
+    /**
+     * @return A {@code BiConsumer<JsonWriter, T>} that writes the type
+     */
+    CodeBlock writer(TypeMirror type) {
+        return CodeBlock.of("$T::$N", className, WRITE_PREFIX + suffix(boxed(type)));
+    }
+
+    TypeSpec.Builder build() {
+        return TypeSpec.classBuilder(className)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build())
+                .addMethods(methods);
+    }
+
+    private TypeMirror boxed(TypeMirror type) {
+        return type.getKind().isPrimitive()
+                ? types.boxedClass(types.getPrimitiveType(type.getKind())).asType()
+                : type;
+    }
+
+    /**
+     * @return The suffix of the read and write methods of the type, which are built the first time
+     */
+    private String suffix(TypeMirror type) {
+        String key = type.toString();
+        String suffix = suffixes.get(key);
+        if (suffix == null) {
+            suffix = names.newName(simpleSuffix(type));
+            // Before the methods are built, so recursive types find it
+            suffixes.put(key, suffix);
+            buildMethods(type, suffix);
+        }
+        return suffix;
+    }
+
+    private String simpleSuffix(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return "Value";
+        }
+        DeclaredType declaredType = (DeclaredType) type;
+        StringBuilder suffix = new StringBuilder(declaredType.asElement().getSimpleName());
+        String separator = "Of";
+        for (TypeMirror argument : declaredType.getTypeArguments()) {
+            suffix.append(separator)
+                    .append(simpleSuffix(argument));
+            separator = "And";
+        }
+        return suffix.toString();
+    }
+
+    private void buildMethods(TypeMirror type, String suffix) {
+        TypeName typeName = TypeName.get(type);
+        MethodSpec.Builder read = MethodSpec.methodBuilder(READ_PREFIX + suffix)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addAnnotation(Nullable.class)
+                .returns(typeName)
+                .addParameter(JsonReader.class, "reader");
+        MethodSpec.Builder write = MethodSpec.methodBuilder(WRITE_PREFIX + suffix)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(JsonWriter.class, "writer")
+                .addParameter(ParameterSpec.builder(typeName, "value")
+                        .addAnnotation(Nullable.class)
+                        .build());
+        checkState(type.getKind() == TypeKind.DECLARED, "Type %s is not supported by JSON codecs", type);
+        DeclaredType declaredType = (DeclaredType) type;
+        TypeElement element = (TypeElement) declaredType.asElement();
+        String name = element.getQualifiedName().toString();
+
+        if (name.equals(String.class.getName())) {
+            read.addStatement("return reader.nextString()");
+            write.addStatement("writer.value(value)");
+        } else if (isBoxed(type)) {
+            TypeMirror primitive = types.unboxedType(type);
+            read.addStatement("return reader.nextNull() ? null : " + PRIMITIVE_READS.get(primitive.getKind()));
+            write.beginControlFlow("if (value == null)")
+                    .addStatement("writer.nullValue()")
+                    .nextControlFlow("else")
+                    .addStatement(primitive.getKind() == TypeKind.CHAR
+                            ? "writer.value(String.valueOf(value))"
+                            : "writer.value(value)")
+                    .endControlFlow();
+        } else if (element.getKind() == ElementKind.ENUM) {
+            read.addStatement("$T name = reader.nextString()", String.class)
+                    .addStatement("return name != null ? $T.valueOf(name) : null", typeName);
+            write.addStatement("writer.value(value != null ? value.name() : null)");
+        } else if (name.equals(Iterator.class.getName())) {
+            // Top-level responses are read lazily with JsonReader.elements instead
+            TypeMirror elementType = typeArgument(declaredType, 0);
+            read.beginControlFlow("if (reader.nextNull())")
+                    .addStatement("return null")
+                    .endControlFlow()
+                    .addStatement("$T<$T> elements = new $T<>()", ArrayList.class, TypeName.get(elementType), ArrayList.class)
+                    .addStatement("reader.beginArray()")
+                    .beginControlFlow("while (reader.hasNext())")
+                    .addStatement("elements.add($L)", readExpression(elementType))
+                    .endControlFlow()
+                    .addStatement("reader.endArray()")
+                    .addStatement("return elements.iterator()");
+            write.beginControlFlow("if (value == null)")
+                    .addStatement("writer.nullValue()")
+                    .addStatement("return")
+                    .endControlFlow()
+                    .addStatement("writer.beginArray()")
+                    .beginControlFlow("while (value.hasNext())")
+                    .addCode(writeStatement(elementType, CodeBlock.of("value.next()")))
+                    .endControlFlow()
+                    .addStatement("writer.endArray()");
+        } else if (LIST_TYPES.contains(name) || SET_TYPES.contains(name) || SORTED_SET_TYPES.contains(name)) {
+            TypeMirror elementType = typeArgument(declaredType, 0);
+            Class<?> collectionClass = LIST_TYPES.contains(name)
+                    ? ArrayList.class
+                    : SET_TYPES.contains(name) ? LinkedHashSet.class : TreeSet.class;
+            read.beginControlFlow("if (reader.nextNull())")
+                    .addStatement("return null")
+                    .endControlFlow()
+                    .addStatement("$T<$T> collection = new $T<>()", collectionClass, TypeName.get(elementType), collectionClass)
+                    .addStatement("reader.beginArray()")
+                    .beginControlFlow("while (reader.hasNext())")
+                    .addStatement("collection.add($L)", readExpression(elementType))
+                    .endControlFlow()
+                    .addStatement("reader.endArray()")
+                    .addStatement("return collection");
+            write.beginControlFlow("if (value == null)")
+                    .addStatement("writer.nullValue()")
+                    .addStatement("return")
+                    .endControlFlow()
+                    .addStatement("writer.beginArray()")
+                    .beginControlFlow("for ($T element : value)", TypeName.get(elementType))
+                    .addCode(writeStatement(elementType, CodeBlock.of("element")))
+                    .endControlFlow()
+                    .addStatement("writer.endArray()");
+        } else if (MAP_TYPES.contains(name)) {
+            checkState(isType(typeArgument(declaredType, 0), String.class),
+                    "Only maps with %s keys are supported by JSON codecs: %s", String.class, type);
+            TypeMirror valueType = typeArgument(declaredType, 1);
+            read.beginControlFlow("if (reader.nextNull())")
+                    .addStatement("return null")
+                    .endControlFlow()
+                    .addStatement("$T<$T, $T> map = new $T<>()", LinkedHashMap.class, String.class, TypeName.get(valueType), LinkedHashMap.class)
+                    .addStatement("reader.beginObject()")
+                    .beginControlFlow("while (reader.hasNext())")
+                    .addStatement("map.put(reader.nextName(), $L)", readExpression(valueType))
+                    .endControlFlow()
+                    .addStatement("reader.endObject()")
+                    .addStatement("return map");
+            write.beginControlFlow("if (value == null)")
+                    .addStatement("writer.nullValue()")
+                    .addStatement("return")
+                    .endControlFlow()
+                    .addStatement("writer.beginObject()")
+                    .beginControlFlow("for ($T.Entry<$T, $T> entry : value.entrySet())", Map.class, String.class, TypeName.get(valueType))
+                    .addStatement("writer.name(entry.getKey())")
+                    .addCode(writeStatement(valueType, CodeBlock.of("entry.getValue()")))
+                    .endControlFlow()
+                    .addStatement("writer.endObject()");
+        } else {
+            buildObjectMethods(declaredType, element, read, write);
+        }
+        methods.add(read.build());
+        methods.add(write.build());
+    }
+
+    private void buildObjectMethods(DeclaredType type,
+                                    TypeElement element,
+                                    MethodSpec.Builder read,
+                                    MethodSpec.Builder write) {
+        checkState(element.getKind() == ElementKind.CLASS
+                        && !element.getModifiers().contains(Modifier.ABSTRACT)
+                        && hasPublicConstructor(element),
+                "Type %s is not supported by JSON codecs: it must be a class with a public constructor without parameters", type);
+
+        read.beginControlFlow("if (reader.nextNull())")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("$T value = new $T()", TypeName.get(type), TypeName.get(type))
+                .addStatement("reader.beginObject()")
+                .beginControlFlow("while (reader.hasNext())")
+                .beginControlFlow("switch (reader.nextName())");
+        write.beginControlFlow("if (value == null)")
+                .addStatement("writer.nullValue()")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("writer.beginObject()");
+
+        for (Property property : properties(type, element)) {
+            read.addCode("case $S:\n$>", property.name);
+            if (property.type.getKind().isPrimitive()) {
+                read.beginControlFlow("if (!reader.nextNull())")
+                        .addStatement(property.set(readExpression(property.type)))
+                        .endControlFlow();
+            } else {
+                read.addStatement(property.set(readExpression(property.type)));
+            }
+            read.addStatement("break")
+                    .addCode("$<");
+
+            if (property.type.getKind().isPrimitive()) {
+                write.addStatement("writer.name($S)", property.name)
+                        .addCode(writeStatement(property.type, property.get()));
+            } else {
+                write.beginControlFlow("if ($L != null)", property.get())
+                        .addStatement("writer.name($S)", property.name)
+                        .addCode(writeStatement(property.type, property.get()))
+                        .endControlFlow();
+            }
+        }
+
+        read.addCode("default:\n$>")
+                .addStatement("reader.skipValue()")
+                .addCode("$<")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("reader.endObject()")
+                .addStatement("return value");
+        write.addStatement("writer.endObject()");
+    }
+
+    /**
+     * @return The public fields, and then the getter and setter pairs, which take the place of the fields of the same name
+     */
+    private List<Property> properties(DeclaredType type, TypeElement element) {
+        Map<String, Property> properties = Maps.newLinkedHashMap();
+        List<? extends Element> members = elements.getAllMembers(element);
+        for (VariableElement field : ElementFilter.fieldsIn(members)) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PUBLIC)
+                    && !modifiers.contains(Modifier.STATIC)
+                    && !modifiers.contains(Modifier.FINAL)
+                    && !modifiers.contains(Modifier.TRANSIENT)) {
+                String name = field.getSimpleName().toString();
+                properties.put(name, new Property(name, types.asMemberOf(type, field), name, null));
+            }
+        }
+        List<ExecutableElement> methods = ElementFilter.methodsIn(members);
+        for (ExecutableElement getter : methods) {
+            String name = propertyName(getter);
+            if (name == null) {
+                continue;
+            }
+            TypeMirror propertyType = ((ExecutableType) types.asMemberOf(type, getter)).getReturnType();
+            String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (ExecutableElement setter : methods) {
+                if (setter.getSimpleName().contentEquals(setterName)
+                        && isPublicInstanceMethod(setter)
+                        && setter.getParameters().size() == 1
+                        && types.isSameType(((ExecutableType) types.asMemberOf(type, setter))
+                        .getParameterTypes().get(0), propertyType)) {
+                    properties.put(name, new Property(name, propertyType, getter.getSimpleName() + "()", setterName));
+                }
+            }
+        }
+        return Lists.newArrayList(properties.values());
+    }
+
+    /**
+     * @return The name of the property of a getter, or null if the method is not a getter
+     */
+    @Nullable
+    private static String propertyName(ExecutableElement method) {
+        if (!isPublicInstanceMethod(method)
+                || !method.getParameters().isEmpty()
+                || method.getReturnType().getKind() == TypeKind.VOID
+                || method.getSimpleName().contentEquals("getClass")) {
+            return null;
+        }
+        String name = method.getSimpleName().toString();
+        int prefix;
+        if (name.startsWith("get")) {
+            prefix = 3;
+        } else if (name.startsWith("is") && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+            prefix = 2;
+        } else {
+            return null;
+        }
+        return name.length() > prefix
+                ? Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1)
+                : null;
+    }
+
+    private static boolean isPublicInstanceMethod(ExecutableElement method) {
+        return method.getModifiers().contains(Modifier.PUBLIC)
+                && !method.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private static boolean hasPublicConstructor(TypeElement element) {
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(element.getEnclosedElements());
+        return element.getModifiers().contains(Modifier.PUBLIC)
+                && (element.getNestingKind() == NestingKind.TOP_LEVEL
+                || element.getModifiers().contains(Modifier.STATIC))
+                && constructors.stream()
+                .anyMatch((c) -> c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC));
+    }
+
+    private CodeBlock readExpression(TypeMirror type) {
+        return type.getKind().isPrimitive()
+                ? CodeBlock.of(PRIMITIVE_READS.get(type.getKind()))
+                : CodeBlock.of("$N(reader)", READ_PREFIX + suffix(type));
+    }
+
+    private CodeBlock writeStatement(TypeMirror type, CodeBlock value) {
+        if (type.getKind() == TypeKind.CHAR) {
+            return CodeBlock.of("writer.value($T.valueOf($L));\n", String.class, value);
+        }
+        return type.getKind().isPrimitive()
+                ? CodeBlock.of("writer.value($L);\n", value)
+                : CodeBlock.of("$N(writer, $L);\n", WRITE_PREFIX + suffix(type), value);
+    }
+
+    private TypeMirror typeArgument(DeclaredType type, int index) {
+        checkState(type.getTypeArguments().size() > index, "Raw type %s is not supported by JSON codecs", type);
+        TypeMirror argument = type.getTypeArguments().get(index);
+        if (argument.getKind() == TypeKind.WILDCARD) {
+            argument = ((WildcardType) argument).getExtendsBound();
+            checkState(argument != null, "Wildcard in %s is not supported by JSON codecs", type);
+        }
+        return argument;
+    }
+
+    private boolean isBoxed(TypeMirror type) {
+        try {
+            types.unboxedType(type);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isType(TypeMirror type, Class<?> clazz) {
+        return clazz.getName().equals(type.toString());
+    }
+
+    /**
+     * A property of a class, read and written through a field, or through a getter and a setter.
+     */
+    private static class Property {
+        private final String name;
+        private final TypeMirror type;
+        private final String getter;
+        @Nullable
+        private final String setter;
+
+        private Property(String name, TypeMirror type, String getter, @Nullable String setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        private CodeBlock get() {
+            return CodeBlock.of("value.$L", getter);
+        }
+
+        private CodeBlock set(CodeBlock expression) {
+            return setter != null
+                    ? CodeBlock.of("value.$N($L)", setter, expression)
+                    : CodeBlock.of("value.$N = $L", getter, expression);
+        }
+    }
+}
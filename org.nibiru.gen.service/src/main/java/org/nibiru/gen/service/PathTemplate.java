@@ -0,0 +1,163 @@
+package org.nibiru.gen.service;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A JAX-RS path, such as "users/{id}/posts/{post: [0-9]+}", split into literal text and variables
+ * when the client is generated. Regular expressions of the variables are not checked by the client.
+ */
+class PathTemplate {
+    private final String path;
+    private final List<Segment> segments;
+
+    private PathTemplate(String path, List<Segment> segments) {
+        this.path = checkNotNull(path);
+        this.segments = checkNotNull(segments);
+    }
+
+    /**
+     * Joins the paths of a class and of one of its methods, either of which may be absent.
+     */
+    static PathTemplate parse(@Nullable String classPath, @Nullable String methodPath) {
+        String path;
+        if (classPath == null || classPath.isEmpty()) {
+            path = methodPath != null ? methodPath : "";
+        } else if (methodPath == null || methodPath.isEmpty()) {
+            path = classPath;
+        } else {
+            path = stripEnd(classPath) + "/" + stripStart(methodPath);
+        }
+        return parse(path);
+    }
+
+    static PathTemplate parse(String path) {
+        ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+        int start = 0;
+        while (start < path.length()) {
+            int open = path.indexOf('{', start);
+            if (open < 0) {
+                segments.add(new Segment(path.substring(start), false));
+                break;
+            }
+            if (open > start) {
+                segments.add(new Segment(path.substring(start, open), false));
+            }
+            int close = closingBrace(path, open);
+            String variable = path.substring(open + 1, close);
+            int colon = variable.indexOf(':');
+            String name = (colon >= 0 ? variable.substring(0, colon) : variable).trim();
+            if (name.isEmpty()) {
+                throw new IllegalStateException("Empty variable name in path " + path);
+            }
+            segments.add(new Segment(name, true));
+            start = close + 1;
+        }
+        return new PathTemplate(path, segments.build());
+    }
+
+    /**
+     * @return The index of the brace that closes the variable, skipping those of its regular expression
+     */
+    private static int closingBrace(String path, int open) {
+        int braces = 0;
+        for (int n = open; n < path.length(); n++) {
+            if (path.charAt(n) == '{') {
+                braces++;
+            } else if (path.charAt(n) == '}' && --braces == 0) {
+                return n;
+            }
+        }
+        throw new IllegalStateException("Unmatched braces in path " + path);
+    }
+
+    private static String stripEnd(String path) {
+        return path.endsWith("/")
+                ? path.substring(0, path.length() - 1)
+                : path;
+    }
+
+    private static String stripStart(String path) {
+        return path.startsWith("/")
+                ? path.substring(1)
+                : path;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    List<Segment> getSegments() {
+        return segments;
+    }
+
+    List<String> getVariables() {
+        return segments.stream()
+                .filter(Segment::isVariable)
+                .map(Segment::getText)
+                .collect(Collectors.toCollection(Lists::newArrayList));
+    }
+
+    /**
+     * @return The segments between slashes, leaving out empty ones, each of which is either literal
+     * text or a single variable
+     */
+    List<Segment> getPathSegments() {
+        List<Segment> pathSegments = Lists.newArrayList();
+        List<Segment> parts = Lists.newArrayList();
+        for (Segment segment : segments) {
+            if (segment.isVariable()) {
+                parts.add(segment);
+                continue;
+            }
+            boolean first = true;
+            for (String text : Splitter.on('/').split(segment.getText())) {
+                if (!first) {
+                    addPathSegment(pathSegments, parts);
+                    parts.clear();
+                }
+                first = false;
+                if (!text.isEmpty()) {
+                    parts.add(new Segment(text, false));
+                }
+            }
+        }
+        addPathSegment(pathSegments, parts);
+        return pathSegments;
+    }
+
+    private void addPathSegment(List<Segment> pathSegments, List<Segment> parts) {
+        checkState(parts.size() <= 1,
+                "Path %s has a segment with both text and variables, which can not be routed", path);
+        pathSegments.addAll(parts);
+    }
+
+    static final class Segment {
+        private final String text;
+        private final boolean variable;
+
+        private Segment(String text, boolean variable) {
+            this.text = text;
+            this.variable = variable;
+        }
+
+        /**
+         * @return The literal text, or the name of the variable
+         */
+        String getText() {
+            return text;
+        }
+
+        boolean isVariable() {
+            return variable;
+        }
+    }
+}
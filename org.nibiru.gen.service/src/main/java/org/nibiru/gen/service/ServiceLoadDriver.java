@@ -0,0 +1,206 @@
+package org.nibiru.gen.service;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import org.nibiru.gen.api.service.LoadTest;
+import org.nibiru.gen.api.service.ServiceMetrics;
+import org.nibiru.mobile.core.api.service.RemoteService;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Builds the {@code FooLoadDriver} of a service, whose {@link LoadTest} calls each method of
+ * {@code Foo} in turn.
+ * <p>
+ * The arguments of the calls are made by a protected method for each parameter, such as
+ * {@code searchQuery(long n)} for the parameter {@code query} of {@code search}, which a subclass
+ * can override. By default, they make numbers and strings from the number of the call, cycle through
+ * the constants of enums, and set those properties of objects, and leave other values null.
+ */
+class ServiceLoadDriver {
+    static final String LOAD_DRIVER_SUFFIX = "LoadDriver";
+    private static final String SERVICE_NAME = "service";
+    private static final String LOAD_TEST_NAME = "loadTest";
+    private static final Map<String, TypeKind> BOXES = ImmutableMap.<String, TypeKind>builder()
+            .put(Boolean.class.getName(), TypeKind.BOOLEAN)
+            .put(Byte.class.getName(), TypeKind.BYTE)
+            .put(Short.class.getName(), TypeKind.SHORT)
+            .put(Integer.class.getName(), TypeKind.INT)
+            .put(Long.class.getName(), TypeKind.LONG)
+            .put(Character.class.getName(), TypeKind.CHAR)
+            .put(Float.class.getName(), TypeKind.FLOAT)
+            .put(Double.class.getName(), TypeKind.DOUBLE)
+            .build();
+
+    private final TypeElement type;
+    private final boolean batched;
+    private final boolean metered;
+    private final NameAllocator methodNames;
+    private final NameAllocator endpointNames;
+    private final List<MethodSpec> argumentMethods;
+    private final CodeBlock.Builder endpoints;
+
+    /**
+     * @param batched If the implementation of the service takes a scheduler for its batches
+     * @param metered If the implementation of the service takes a metrics sink
+     */
+    ServiceLoadDriver(TypeElement type, boolean batched, boolean metered) {
+        this.type = checkNotNull(type);
+        this.batched = batched;
+        this.metered = metered;
+        this.methodNames = new NameAllocator();
+        methodNames.newName(LOAD_TEST_NAME);
+        this.endpointNames = new NameAllocator();
+        this.argumentMethods = Lists.newArrayList();
+        this.endpoints = CodeBlock.builder();
+    }
+
+    /**
+     * @return The code that adds the endpoint of the method to the load test
+     */
+    CodeBlock addEndpoint(ExecutableElement element) {
+        String methodName = element.getSimpleName().toString();
+        List<CodeBlock> arguments = Lists.newArrayList();
+        for (VariableElement param : element.getParameters()) {
+            String paramName = param.getSimpleName().toString();
+            String argumentMethod = methodNames.newName(methodName
+                    + Character.toUpperCase(paramName.charAt(0))
+                    + paramName.substring(1));
+            argumentMethods.add(buildArgumentMethod(argumentMethod, param.asType(), paramName));
+            arguments.add(CodeBlock.of("$N(n)", argumentMethod));
+        }
+        CodeBlock endpoint = CodeBlock.builder()
+                .add("\n.endpoint($S, (n, completion) -> $N.$N($L)\n$>$>.then((response) -> completion.succeeded())\n"
+                                + ".capture(completion::failed))$<$<",
+                        endpointNames.newName(methodName),
+                        SERVICE_NAME,
+                        methodName,
+                        CodeBlock.join(arguments, ", "))
+                .build();
+        endpoints.add(endpoint);
+        return endpoint;
+    }
+
+    TypeSpec.Builder build() {
+        ClassName typeName = ClassName.get(type);
+        ClassName implName = typeName.peerClass(typeName.simpleName() + "Impl");
+        return TypeSpec.classBuilder(typeName.simpleName() + LOAD_DRIVER_SUFFIX)
+                .addModifiers(Modifier.PUBLIC)
+                .addField(typeName, SERVICE_NAME, Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addAnnotation(Inject.class)
+                        .addParameter(typeName, SERVICE_NAME)
+                        .addStatement("this.$N = $T.checkNotNull($N)", SERVICE_NAME, Preconditions.class, SERVICE_NAME)
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(RemoteService.class, "remoteService")
+                        .addStatement("this(new $T($L))", implName, batched
+                                ? CodeBlock.of("remoteService, null, null")
+                                : metered
+                                ? CodeBlock.of("remoteService, null, new $T()", ServiceMetrics.class)
+                                : CodeBlock.of("remoteService, null"))
+                        .build())
+                .addMethod(MethodSpec.methodBuilder(LOAD_TEST_NAME)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addJavadoc("@return A load test of all the methods of {@link $T}, which can be configured further\n",
+                                typeName)
+                        .returns(LoadTest.Builder.class)
+                        .addCode("return $T.builder()$>$>", LoadTest.class)
+                        .addCode(endpoints.build())
+                        .addCode(";\n$<$<")
+                        .build())
+                .addMethods(argumentMethods);
+    }
+
+    private MethodSpec buildArgumentMethod(String name, TypeMirror type, String paramName) {
+        MethodSpec.Builder method = MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PROTECTED)
+                .returns(TypeName.get(type))
+                .addParameter(long.class, "n");
+        CodeBlock value = syntheticValue(type, paramName);
+        if (value != null) {
+            return method.addStatement("return $L", value)
+                    .build();
+        }
+        Element element = type instanceof DeclaredType
+                ? ((DeclaredType) type).asElement()
+                : null;
+        if (element == null || !BeanProperty.isInstantiable(element)
+                || !((DeclaredType) type).getTypeArguments().isEmpty()) {
+            return method.addStatement("return null")
+                    .build();
+        }
+        String object = "value";
+        method.addStatement("$T $N = new $T()", TypeName.get(type), object, TypeName.get(type));
+        for (Map.Entry<String, BeanProperty> property : BeanProperty.settable(element).entrySet()) {
+            CodeBlock propertyValue = syntheticValue(property.getValue().getType(), property.getKey());
+            if (propertyValue != null) {
+                method.addStatement(property.getValue().set(object, propertyValue));
+            }
+        }
+        return method.addStatement("return $N", object)
+                .build();
+    }
+
+    /**
+     * @return A value made from the number of the call {@code n}, or null if the type is not a
+     * primitive, a box, a string or an enum
+     */
+    @Nullable
+    private static CodeBlock syntheticValue(TypeMirror type, String name) {
+        TypeKind kind = type.getKind().isPrimitive()
+                ? type.getKind()
+                : BOXES.get(type.toString());
+        if (kind != null) {
+            switch (kind) {
+                case BOOLEAN:
+                    return CodeBlock.of("n % 2 == 0");
+                case BYTE:
+                    return CodeBlock.of("(byte) n");
+                case SHORT:
+                    return CodeBlock.of("(short) n");
+                case INT:
+                    return CodeBlock.of("(int) n");
+                case LONG:
+                    return CodeBlock.of("n");
+                case CHAR:
+                    return CodeBlock.of("(char) ('a' + n % 26)");
+                case FLOAT:
+                    return CodeBlock.of("(float) n");
+                default:
+                    return CodeBlock.of("(double) n");
+            }
+        }
+        if (type.toString().equals(String.class.getName())) {
+            return CodeBlock.of("$S + n", name);
+        }
+        if (type instanceof DeclaredType && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM) {
+            TypeName enumName = TypeName.get(type);
+            return CodeBlock.of("$T.values()[(int) (n % $T.values().length)]", enumName, enumName);
+        }
+        return null;
+    }
+}
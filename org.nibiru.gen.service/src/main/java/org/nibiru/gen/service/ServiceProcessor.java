@@ -2,12 +2,25 @@ package org.nibiru.gen.service;
 
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.squareup.javapoet.*;
+import org.nibiru.async.core.api.promise.Deferred;
 import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.Batched;
+import org.nibiru.gen.api.service.Cached;
+import org.nibiru.gen.api.service.JsonCodecs;
+import org.nibiru.gen.api.service.JsonReader;
+import org.nibiru.gen.api.service.JsonWriter;
+import org.nibiru.gen.api.service.Metered;
+import org.nibiru.gen.api.service.MetricsSink;
+import org.nibiru.gen.api.service.ResponseCache;
+import org.nibiru.gen.api.service.Uris;
 import org.nibiru.gen.core.BaseProcessor;
 import org.nibiru.mobile.core.api.http.HttpMethod;
 import org.nibiru.mobile.core.api.http.HttpRequest;
@@ -15,28 +28,36 @@ import org.nibiru.mobile.core.api.service.RemoteService;
 
 import javax.annotation.Nullable;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.inject.Inject;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
 import javax.ws.rs.*;
 import java.lang.annotation.Annotation;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
 @SupportedAnnotationTypes("javax.ws.rs.Path")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedOptions({ServiceProcessor.ROUTERS_OPTION,
+        ServiceProcessor.LOAD_DRIVERS_OPTION})
 public class ServiceProcessor
         extends BaseProcessor {
+    static final String ROUTERS_OPTION = "nibiru.gen.service.routers";
+    static final String LOAD_DRIVERS_OPTION = "nibiru.gen.service.loadDrivers";
     private static final String FIELD_INIT = "this.$L = com.google.common.base.Preconditions.checkNotNull($L)";
+    private static final String NULLABLE_FIELD_INIT = "this.$L = $L";
     private static final Class<?> REMOTE_SERVICE_TYPE = RemoteService.class;
     private static final String REMOTE_SERVICE_NAME = "service";
     private static final TypeName REQUEST_BUILDER_INTERCEPTOR_TYPE = ParameterizedTypeName.get(Function.class,
@@ -50,6 +71,13 @@ public class ServiceProcessor
                     POST.class, HttpMethod.POST,
                     PUT.class, HttpMethod.PUT);
     private static final String GETTER_PREFIX = "get";
+    private static final String QUERY_PARAM_NAME = "queryParam";
+    private static final String CACHE_SUFFIX = "Cache";
+    private static final String DECODE_NAME = "decode";
+    private static final String STREAM_NAME = "stream";
+    private static final String METER_NAME = "meter";
+    private static final String METRICS_SINK_NAME = "metricsSink";
+    private static final String METRICS_SUFFIX = "Metrics";
 
     public ServiceProcessor() {
         super(Path.class);
@@ -57,28 +85,156 @@ public class ServiceProcessor
 
     @Override
     protected Iterable<JavaFile> generate(Set<? extends Element> elements) {
-        Map<TypeElement, TypeSpec.Builder> types = Maps.newHashMap();
+        Map<TypeElement, TypeSpec.Builder> types = Maps.newLinkedHashMap();
+        Set<TypeElement> queryParamTypes = Sets.newHashSet();
+        Map<TypeElement, BatchedService> batchedServices = Maps.newLinkedHashMap();
+        Map<TypeElement, JsonCodecsBuilder> codecs = Maps.newLinkedHashMap();
+        Map<TypeElement, ServiceRouter> routers = Maps.newLinkedHashMap();
+        Map<TypeElement, ServiceLoadDriver> loadDrivers = Maps.newLinkedHashMap();
+        boolean generateRouters = Boolean.parseBoolean(option(ROUTERS_OPTION, "false"));
+        boolean generateLoadDrivers = Boolean.parseBoolean(option(LOAD_DRIVERS_OPTION, "false"));
 
-        for (ExecutableElement executableElement : ElementFilter.methodsIn(elements)) {
-            TypeElement typeElement = (TypeElement) executableElement.getEnclosingElement();
-
-            TypeSpec.Builder builder = types.computeIfAbsent(typeElement,
-                    this::buildServiceClass);
+        // Types annotated with @Path are services too, and so are their methods with no @Path of their own
+        Set<TypeElement> typeElements = Sets.newLinkedHashSet();
+        for (Element element : elements) {
+            typeElements.add(element instanceof TypeElement
+                    ? (TypeElement) element
+                    : (TypeElement) element.getEnclosingElement());
+        }
+        for (TypeElement typeElement : typeElements) {
+            Batched batched = typeElement.getAnnotation(Batched.class);
+            BatchedService batchedService = batched != null
+                    ? new BatchedService(typeElement, batched)
+                    : null;
+            checkState(batched == null || !hasCachedMethods(typeElement),
+                    "Batched service %s can not have %s methods", typeElement, Cached.class);
+            checkState(batched == null || typeElement.getAnnotation(JsonCodecs.class) == null,
+                    "Batched service %s can not be annotated with %s", typeElement, JsonCodecs.class);
+            boolean metered = typeElement.getAnnotation(Metered.class) != null;
+            checkState(batched == null || !metered,
+                    "Batched service %s can not be annotated with %s", typeElement, Metered.class);
+            JsonCodecsBuilder codecsBuilder = typeElement.getAnnotation(JsonCodecs.class) != null
+                    ? new JsonCodecsBuilder(ClassName.get(typeElement).peerClass(typeElement.getSimpleName()
+                    + JsonCodecsBuilder.CODECS_SUFFIX),
+                    processingEnv.getTypeUtils(),
+                    processingEnv.getElementUtils())
+                    : null;
+            ServiceRouter router = generateRouters
+                    ? new ServiceRouter(typeElement, codecsBuilder)
+                    : null;
+            ServiceLoadDriver loadDriver = generateLoadDrivers
+                    ? new ServiceLoadDriver(typeElement, batchedService != null, metered)
+                    : null;
+            MethodSpec.Builder constructorBuilder = buildConstructor(metered);
+            NameAllocator fieldNames = new NameAllocator();
+            fieldNames.newName(REMOTE_SERVICE_NAME);
+            fieldNames.newName(REQUEST_BUILDER_INTERCEPTOR_NAME);
+            for (ExecutableElement executableElement : ElementFilter.methodsIn(typeElement.getEnclosedElements())) {
+                if (!isServiceMethod(executableElement)) {
+                    continue;
+                }
+                TypeSpec.Builder builder = types.computeIfAbsent(typeElement,
+                        (t) -> buildServiceClass(t, batchedService, constructorBuilder));
 
+                if (batchedService != null) {
+                    timed(typeElement.getQualifiedName().toString(),
+                            () -> builder.addMethod(batchedService.buildClientMethod(executableElement,
+                                    buildMethod(executableElement),
+                                    responseType(executableElement, true))));
+                } else if (timed(typeElement.getQualifiedName().toString(),
+                        () -> buildServiceMethod(executableElement, builder, fieldNames, codecsBuilder,
+                                metered ? constructorBuilder : null))) {
+                    queryParamTypes.add(typeElement);
+                }
+                if (router != null) {
+                    timed(typeElement.getQualifiedName().toString(),
+                            () -> router.addRoute(executableElement,
+                                    pathTemplate(executableElement),
+                                    httpMethod(executableElement),
+                                    responseType(executableElement, codecsBuilder != null)));
+                    routers.put(typeElement, router);
+                }
+                if (loadDriver != null) {
+                    timed(typeElement.getQualifiedName().toString(),
+                            () -> loadDriver.addEndpoint(executableElement));
+                    loadDrivers.put(typeElement, loadDriver);
+                }
+            }
+            TypeSpec.Builder builder = types.get(typeElement);
+            if (builder == null) {
+                continue;
+            }
+            builder.addMethod(constructorBuilder.build());
+            if (batchedService != null) {
+                batchedService.addSendMethods(builder);
+                batchedServices.put(typeElement, batchedService);
+            }
+            if (codecsBuilder != null) {
+                builder.addMethod(buildDecodeMethod(metered, false));
+                if (ElementFilter.methodsIn(typeElement.getEnclosedElements())
+                        .stream()
+                        .anyMatch((m) -> isServiceMethod(m) && streamedType(m) != null)) {
+                    builder.addMethod(buildDecodeMethod(metered, true));
+                }
+                codecs.put(typeElement, codecsBuilder);
+            } else if (metered) {
+                builder.addMethod(buildMeterMethod());
+            }
+        }
+        for (TypeElement typeElement : queryParamTypes) {
+            types.get(typeElement).addMethod(buildQueryParamMethod());
+        }
 
-            buildServiceMethod(executableElement,
-                    builder);
+        List<JavaFile> javaFiles = Lists.newArrayList();
+        for (Map.Entry<TypeElement, TypeSpec.Builder> type : types.entrySet()) {
+            javaFiles.add(buildJavaFile(type.getKey(), type.getValue()));
+            BatchedService batchedService = batchedServices.get(type.getKey());
+            if (batchedService != null) {
+                javaFiles.add(buildJavaFile(type.getKey(), batchedService.buildBatchClass()));
+                javaFiles.add(buildJavaFile(type.getKey(), batchedService.buildUnbatcherClass()));
+            }
+            ServiceRouter router = routers.get(type.getKey());
+            if (router != null) {
+                javaFiles.add(buildJavaFile(type.getKey(), router.build()));
+            }
+            ServiceLoadDriver loadDriver = loadDrivers.get(type.getKey());
+            if (loadDriver != null) {
+                javaFiles.add(buildJavaFile(type.getKey(), loadDriver.build()));
+            }
+            JsonCodecsBuilder codecsBuilder = codecs.get(type.getKey());
+            if (codecsBuilder != null) {
+                javaFiles.add(buildJavaFile(type.getKey(), codecsBuilder.build()));
+            }
         }
+        return javaFiles;
+    }
 
-        return types.entrySet()
-                .stream()
-                .map(e -> buildJavaFile(e.getKey(),
-                        e.getValue()))
-                .collect(Collectors.toList());
+    /**
+     * @param metered If the client takes a {@link MetricsSink}, from which the methods get their recorders
+     */
+    private MethodSpec.Builder buildConstructor(boolean metered) {
+        MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Inject.class)
+                .addParameter(REMOTE_SERVICE_TYPE, REMOTE_SERVICE_NAME)
+                .addParameter(ParameterSpec.builder(REQUEST_BUILDER_INTERCEPTOR_TYPE, REQUEST_BUILDER_INTERCEPTOR_NAME)
+                        .addAnnotation(Nullable.class)
+                        .build());
+        if (metered) {
+            constructorBuilder.addParameter(MetricsSink.class, METRICS_SINK_NAME)
+                    .addStatement("$T.checkNotNull($N)", Preconditions.class, METRICS_SINK_NAME);
+        }
+        return constructorBuilder.addStatement(FIELD_INIT, REMOTE_SERVICE_NAME, REMOTE_SERVICE_NAME)
+                .addStatement(NULLABLE_FIELD_INIT, REQUEST_BUILDER_INTERCEPTOR_NAME, REQUEST_BUILDER_INTERCEPTOR_NAME);
     }
 
-    private TypeSpec.Builder buildServiceClass(TypeElement type) {
-        return TypeSpec.classBuilder(type.getSimpleName()
+    /**
+     * @param constructorBuilder Built once all the methods have added their statements to it
+     */
+    private TypeSpec.Builder buildServiceClass(TypeElement type,
+                                               @Nullable BatchedService batchedService,
+                                               MethodSpec.Builder constructorBuilder) {
+        TypeSpec.Builder builder = TypeSpec.classBuilder(type.getSimpleName()
                 + "Impl")
                 .addModifiers(Modifier.PUBLIC)
                 .addSuperinterface(ClassName.get(type))
@@ -93,16 +249,6 @@ public class ServiceProcessor
                         Modifier.FINAL)
                         .addAnnotation(Nullable.class)
                         .build())
-                .addMethod(MethodSpec.constructorBuilder()
-                        .addModifiers(Modifier.PUBLIC)
-                        .addAnnotation(Inject.class)
-                        .addParameter(REMOTE_SERVICE_TYPE, REMOTE_SERVICE_NAME)
-                        .addParameter(ParameterSpec.builder(REQUEST_BUILDER_INTERCEPTOR_TYPE, REQUEST_BUILDER_INTERCEPTOR_NAME)
-                                .addAnnotation(Nullable.class)
-                                .build())
-                        .addStatement(FIELD_INIT, REMOTE_SERVICE_NAME, REMOTE_SERVICE_NAME)
-                        .addStatement(FIELD_INIT, REQUEST_BUILDER_INTERCEPTOR_NAME, REQUEST_BUILDER_INTERCEPTOR_NAME)
-                        .build())
                 .addMethod(MethodSpec.methodBuilder("requestBuilder")
                         .addModifiers(Modifier.PRIVATE)
                         .addParameter(String.class, "path")
@@ -118,31 +264,46 @@ public class ServiceProcessor
                                 "                : builder)")
                         .returns(HttpRequest.Builder.class)
                         .build());
+        if (batchedService != null) {
+            batchedService.addClientMembers(builder, constructorBuilder);
+        }
+        return builder;
     }
 
-    private void buildServiceMethod(ExecutableElement element,
-                                    TypeSpec.Builder builder) {
-        List<? extends VariableElement> params = element.getParameters();
-        checkArgument(params.size() <= 1, "Service method must have 0 or 1 parameters");
-
+    private boolean isServiceMethod(ExecutableElement element) {
+        if (element.getModifiers().contains(Modifier.STATIC)
+                || element.getModifiers().contains(Modifier.DEFAULT)) {
+            return false;
+        }
+        return element.getAnnotation(Path.class) != null
+                || ANNOTATION_TO_HTTP_METHOD.keySet()
+                .stream()
+                .anyMatch((a) -> element.getAnnotation(a) != null);
+    }
 
+    /**
+     * @param meteredConstructor The constructor of a {@link Metered} client, to which the recorder of
+     *                           the method is added
+     * @return true if the method uses the method built by {@link #buildQueryParamMethod()}
+     */
+    private boolean buildServiceMethod(ExecutableElement element,
+                                       TypeSpec.Builder builder,
+                                       NameAllocator fieldNames,
+                                       @Nullable JsonCodecsBuilder codecs,
+                                       @Nullable MethodSpec.Builder meteredConstructor) {
         MethodSpec.Builder methodBuilder = buildMethod(element);
-
-        Path path = element.getAnnotation(Path.class);
-        checkState(path != null, "Method must be annotated with %s", Path.class);
-
-
-        TypeMirror returnTm = element.getReturnType();
-        checkState(returnTm instanceof DeclaredType, "Method must return a class instance");
-        DeclaredType returnType = (DeclaredType) returnTm;
-
-        checkState(returnType.toString().startsWith(Promise.class.getName() + "<"),
-                "Method must return an instance of %s", Promise.class);
+        PathTemplate template = pathTemplate(element);
 
         HttpMethod httpMethod = httpMethod(element);
+        Cached cached = cached(element, httpMethod);
+        TypeMirror streamed = streamedType(element);
+        checkState(streamed == null || codecs != null,
+                "Methods returning an %s must be in a service annotated with %s", Iterator.class, JsonCodecs.class);
 
-        DeclaredType returnDt = (DeclaredType) returnType.getTypeArguments().get(0);
-        String dtoReturnType = returnDt.getTypeArguments().isEmpty()
+        DeclaredType returnDt = responseType(element, cached != null || codecs != null);
+        String dtoReturnType = codecs != null
+                ? "String.class"
+                : returnDt.getTypeArguments().isEmpty()
                 ? returnDt + ".class"
                 : "org.nibiru.mobile.core.api.serializer.TypeLiteral.create("
                 + Splitter.on('<').split(returnDt.toString()).iterator().next()
@@ -153,58 +314,471 @@ public class ServiceProcessor
                 .collect(Collectors.toList()))
                 + ")";
 
-        if (httpMethod == HttpMethod.POST || httpMethod == HttpMethod.PUT) {
-            methodBuilder.addStatement("return service.invoke(requestBuilder($S, "
-                            + "$L, "
-                            + "org.nibiru.mobile.core.api.http.HttpMethod.$L).build(), "
-                            + "$L)",
-                    path.value(),
-                    params.size() == 1
-                            ? name(params.get(0))
-                            : "null",
-                    httpMethod,
-                    dtoReturnType);
-        } else {
-            Map<String, String> urlParams = Maps.newHashMap();
-            for (VariableElement arg : element.getParameters()) {
-                TypeMirror argType = arg.asType();
-                if (argType.getKind().isPrimitive()) {
-                    urlParams.put(name(arg), stringExpression(name(arg), argType));
+        Map<String, VariableElement> pathParams = Maps.newHashMap();
+        // Sorted, so the same request always gets the same URL, and hits the same HTTP cache entries
+        Map<String, QueryParameter> queryParams = Maps.newTreeMap();
+        VariableElement entity = null;
+        for (VariableElement param : element.getParameters()) {
+            PathParam pathParam = param.getAnnotation(PathParam.class);
+            QueryParam queryParam = param.getAnnotation(QueryParam.class);
+            if (pathParam != null) {
+                checkState(template.getVariables().contains(pathParam.value()),
+                        "No variable %s in path %s", pathParam.value(), template.getPath());
+                checkState(pathParams.put(pathParam.value(), param) == null,
+                        "Duplicate path parameter %s", pathParam.value());
+            } else if (queryParam != null) {
+                addQueryParameter(queryParams, queryParam.value(),
+                        new QueryParameter(CodeBlock.of("$N", name(param)), param.asType(), null));
+            } else {
+                checkState(entity == null,
+                        "Service method must have 0 or 1 parameters without %s or %s", PathParam.class, QueryParam.class);
+                entity = param;
+            }
+        }
+        for (String variable : template.getVariables()) {
+            checkState(pathParams.containsKey(variable),
+                    "Variable %s of path %s has no %s parameter", variable, template.getPath(), PathParam.class);
+        }
+
+        NameAllocator names = new NameAllocator();
+        for (VariableElement param : element.getParameters()) {
+            names.newName(name(param));
+        }
+
+        CodeBlock body = CodeBlock.of("null");
+        CodeBlock requestSize = CodeBlock.of("0");
+        if (entity != null) {
+            if (httpMethod == HttpMethod.POST || httpMethod == HttpMethod.PUT) {
+                if (codecs == null) {
+                    body = CodeBlock.of("$N", name(entity));
+                    // Unknown, since the RemoteService serializes the body
+                    requestSize = CodeBlock.of("-1");
+                } else if (meteredConstructor == null) {
+                    body = CodeBlock.of("$T.toJson($N, $L)", JsonWriter.class, name(entity), codecs.writer(entity.asType()));
                 } else {
-                    DeclaredType argDeclaredType = (DeclaredType) argType;
-                    ElementFilter.fieldsIn(argDeclaredType.asElement().getEnclosedElements())
-                            .stream()
-                            .filter((v) -> v.getModifiers()
-                                    .contains(Modifier.PUBLIC))
-                            .forEach((v) -> urlParams.put(name(v),
-                                    stringExpression(name(arg) + "." + name(v), v.asType())));
-                    ElementFilter.methodsIn(argDeclaredType.asElement().getEnclosedElements())
-                            .stream()
-                            .filter((m) -> m.getModifiers()
-                                    .contains(Modifier.PUBLIC)
-                                    && name(m).startsWith(GETTER_PREFIX))
-                            .forEach((m) -> urlParams.put(getterName(m),
-                                    stringExpression(name(arg) + "." + name(m) + "()", m.getReturnType())));
+                    String json = names.newName("json");
+                    methodBuilder.addStatement("$T $N = $T.toJson($N, $L)",
+                            String.class, json, JsonWriter.class, name(entity), codecs.writer(entity.asType()));
+                    body = CodeBlock.of("$N", json);
+                    requestSize = CodeBlock.of("$N.length()", json);
                 }
+            } else {
+                addEntityQueryParameters(queryParams, entity);
             }
+        }
+        CodeBlock path = path(template, pathParams);
+        String cache = null;
+        String cacheKey = null;
+        if (cached != null) {
+            TypeName promiseType = ParameterizedTypeName.get(ClassName.get(Promise.class),
+                    TypeName.get(returnDt),
+                    ClassName.get(Exception.class));
+            cache = fieldNames.newName(name(element) + CACHE_SUFFIX);
+            builder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ResponseCache.class), promiseType),
+                    cache,
+                    Modifier.PRIVATE,
+                    Modifier.FINAL)
+                    .initializer("new $T<>($L, $LL)", ResponseCache.class, cached.maxSize(), cached.ttlMillis())
+                    .build());
+            String pathVariable = names.newName("path");
+            cacheKey = names.newName("cacheKey");
+            String cachedPromise = names.newName("cached");
+            methodBuilder.addStatement("$T $N = $L", String.class, pathVariable, path)
+                    .addStatement("$T $N = $T.key($L)", String.class, cacheKey, ResponseCache.class,
+                            cacheKeyArguments(pathVariable, queryParams))
+                    .addStatement("$T $N = $N.get($N)", promiseType, cachedPromise, cache, cacheKey)
+                    .beginControlFlow("if ($N != null)", cachedPromise)
+                    .addStatement("return $N", cachedPromise)
+                    .endControlFlow();
+            path = CodeBlock.of("$N", pathVariable);
+        }
 
-            methodBuilder.addStatement("return service.invoke(requestBuilder($S, "
-                            + "null, "
-                            + "org.nibiru.mobile.core.api.http.HttpMethod.$L)"
-                            + "$L"
-                            + ".build(), "
-                            + "$L)",
-                    path.value(),
-                    httpMethod,
-                    Joiner.on("").join(urlParams.entrySet()
-                            .stream()
-                            .map((e) -> ".queryParam(\"" + e.getKey() + "\", " + e.getValue() + ")\n")
-                            .collect(Collectors.toList())),
-                    dtoReturnType);
-
+        CodeBlock request = CodeBlock.of("requestBuilder($L, $L, $T.$L)",
+                path,
+                body,
+                HttpMethod.class,
+                httpMethod);
+        boolean queryParamMethod = false;
+        CodeBlock invoke;
+        if (queryParams.isEmpty()) {
+            invoke = CodeBlock.of("service.invoke($L.build(), $L)", request, dtoReturnType);
+        } else {
+            String requestBuilder = names.newName("builder");
+            methodBuilder.addStatement("$T $N = $L", HttpRequest.Builder.class, requestBuilder, request);
+            queryParamMethod = addQueryParameters(methodBuilder, requestBuilder, queryParams);
+            invoke = CodeBlock.of("service.invoke($N.build(), $L)", requestBuilder, dtoReturnType);
+        }
+        if (meteredConstructor != null) {
+            String recorder = fieldNames.newName(name(element) + METRICS_SUFFIX);
+            builder.addField(MetricsSink.EndpointRecorder.class, recorder, Modifier.PRIVATE, Modifier.FINAL);
+            meteredConstructor.addStatement("this.$N = $N.endpoint($S, $S)", recorder, METRICS_SINK_NAME,
+                    ((TypeElement) element.getEnclosingElement()).getQualifiedName(), name(element));
+            String start = names.newName("start");
+            methodBuilder.addStatement("$N.started($L)", recorder, requestSize)
+                    .addStatement("long $N = $T.nanoTime()", start, System.class);
+            invoke = codecs != null
+                    ? CodeBlock.of("$N($L, $L, $N, $N)", streamed != null ? STREAM_NAME : DECODE_NAME, invoke,
+                    codecs.reader(streamed != null ? streamed : returnDt), recorder, start)
+                    : CodeBlock.of("$N($L, $N, $N)", METER_NAME, invoke, recorder, start);
+            // A request that fails before a promise is returned must not stay in flight
+            String promise = names.newName("promise");
+            String exception = names.newName("e");
+            methodBuilder.addStatement("$T $N", TypeName.get(element.getReturnType()), promise)
+                    .beginControlFlow("try")
+                    .addStatement("$N = $L", promise, invoke)
+                    .nextControlFlow("catch ($T $N)", RuntimeException.class, exception)
+                    .addStatement("$N.completed($T.nanoTime() - $N, -1, $N)", recorder, System.class, start, exception)
+                    .addStatement("throw $N", exception)
+                    .endControlFlow();
+            invoke = CodeBlock.of("$N", promise);
+        } else if (codecs != null) {
+            invoke = CodeBlock.of("$N($L, $L)", streamed != null ? STREAM_NAME : DECODE_NAME, invoke,
+                    codecs.reader(streamed != null ? streamed : returnDt));
+        }
+        if (cached != null) {
+            addCachedInvoke(methodBuilder, invoke, TypeName.get(returnDt), cache, cacheKey, names);
+        } else {
+            methodBuilder.addStatement("return $L", invoke);
         }
 
         builder.addMethod(methodBuilder.build());
+        return queryParamMethod;
+    }
+
+    /**
+     * @return The path of the type of the method joined with its own
+     */
+    private PathTemplate pathTemplate(ExecutableElement element) {
+        Path classPath = element.getEnclosingElement().getAnnotation(Path.class);
+        Path methodPath = element.getAnnotation(Path.class);
+        checkState(classPath != null || methodPath != null,
+                "Method or its type must be annotated with %s", Path.class);
+        return PathTemplate.parse(classPath != null ? classPath.value() : null,
+                methodPath != null ? methodPath.value() : null);
+    }
+
+    /**
+     * @return The {@link Cached} annotation of the method, or of its type if the method is a GET that
+     * does not return an {@link Iterator}, which can only be iterated once
+     */
+    @Nullable
+    private Cached cached(ExecutableElement element, HttpMethod httpMethod) {
+        Cached cached = element.getAnnotation(Cached.class);
+        if (cached != null) {
+            checkState(httpMethod == HttpMethod.GET, "Only GET methods can be annotated with %s", Cached.class);
+            checkState(streamedType(element) == null,
+                    "Methods returning an %s can not be annotated with %s", Iterator.class, Cached.class);
+            return cached;
+        }
+        return httpMethod == HttpMethod.GET && streamedType(element) == null
+                ? element.getEnclosingElement().getAnnotation(Cached.class)
+                : null;
+    }
+
+    /**
+     * @return The type of the elements if the method returns a promise of an {@link Iterator}, whose
+     * elements are read from the response as the iterator is advanced, or null
+     */
+    @Nullable
+    private TypeMirror streamedType(ExecutableElement element) {
+        DeclaredType responseType = responseType(element, false);
+        if (!((TypeElement) responseType.asElement()).getQualifiedName().contentEquals(Iterator.class.getName())) {
+            return null;
+        }
+        checkState(responseType.getTypeArguments().size() == 1, "Method must return an %s of a type", Iterator.class);
+        return responseType.getTypeArguments().get(0);
+    }
+
+    private boolean hasCachedMethods(TypeElement type) {
+        return type.getAnnotation(Cached.class) != null
+                || ElementFilter.methodsIn(type.getEnclosedElements())
+                .stream()
+                .anyMatch((m) -> m.getAnnotation(Cached.class) != null);
+    }
+
+    /**
+     * @return The arguments of {@link ResponseCache#key(String, Object...)}, with the query parameters
+     * in the order they are sent
+     */
+    private CodeBlock cacheKeyArguments(String pathVariable, Map<String, QueryParameter> queryParams) {
+        List<CodeBlock> arguments = Lists.newArrayList(CodeBlock.of("$N", pathVariable));
+        for (Map.Entry<String, QueryParameter> entry : queryParams.entrySet()) {
+            QueryParameter parameter = entry.getValue();
+            arguments.add(CodeBlock.of("$S", entry.getKey()));
+            arguments.add(parameter.owner != null
+                    ? CodeBlock.of("$N != null ? $L : null", parameter.owner, parameter.value)
+                    : parameter.value);
+        }
+        return CodeBlock.join(arguments, ", ");
+    }
+
+    /**
+     * Adds the statements that keep the promise of the response in the cache while it is in flight,
+     * without expiring, start its TTL once it is resolved, unless it was evicted meanwhile, and remove it
+     * if it is rejected.
+     */
+    private void addCachedInvoke(MethodSpec.Builder methodBuilder,
+                                 CodeBlock invoke,
+                                 TypeName responseType,
+                                 String cache,
+                                 String cacheKey,
+                                 NameAllocator names) {
+        String deferred = names.newName("deferred");
+        String promise = names.newName("promise");
+        methodBuilder.addStatement("$T $N = $T.defer()",
+                ParameterizedTypeName.get(ClassName.get(Deferred.class), responseType, ClassName.get(Exception.class)),
+                deferred,
+                Deferred.class)
+                .addStatement("$T $N = $N.promise()",
+                        ParameterizedTypeName.get(ClassName.get(Promise.class), responseType, ClassName.get(Exception.class)),
+                        promise,
+                        deferred)
+                .addStatement("$N.putInFlight($N, $N)", cache, cacheKey, promise)
+                .addCode("$L\n$>$>.then((response) -> {\n$>", invoke)
+                .addStatement("$N.resolved($N, $N)", cache, cacheKey, promise)
+                .addStatement("$N.resolve(response)", deferred)
+                .addCode("$<})\n.capture((exception) -> {\n$>")
+                .addStatement("$N.remove($N, $N)", cache, cacheKey, promise)
+                .addStatement("$N.reject(exception)", deferred)
+                .addCode("$<});\n$<$<")
+                .addStatement("return $N", promise);
+    }
+
+    /**
+     * @param exception If the promise must be rejected with {@link Exception}, rather than a subclass of it
+     * @return The type of the value of the promise returned by the method
+     */
+    private DeclaredType responseType(ExecutableElement element, boolean exception) {
+        TypeMirror returnTm = element.getReturnType();
+        checkState(returnTm instanceof DeclaredType, "Method must return a class instance");
+        DeclaredType returnType = (DeclaredType) returnTm;
+
+        checkState(returnType.toString().startsWith(Promise.class.getName() + "<"),
+                "Method must return an instance of %s", Promise.class);
+        checkState(!exception || isType(returnType.getTypeArguments().get(1), Exception.class),
+                "Method must return an instance of %s<?, %s>", Promise.class, Exception.class);
+
+        return (DeclaredType) returnType.getTypeArguments().get(0);
+    }
+
+    /**
+     * @return The concatenation of the literal parts of the path and of its percent-encoded parameters
+     */
+    private CodeBlock path(PathTemplate template, Map<String, VariableElement> pathParams) {
+        List<CodeBlock> parts = Lists.newArrayList();
+        for (PathTemplate.Segment segment : template.getSegments()) {
+            if (!segment.isVariable()) {
+                parts.add(CodeBlock.of("$S", segment.getText()));
+                continue;
+            }
+            VariableElement param = pathParams.get(segment.getText());
+            TypeKind kind = param.asType().getKind();
+            if (kind.isPrimitive() && kind != TypeKind.CHAR) {
+                // Numbers and booleans never need to be encoded
+                parts.add(parts.isEmpty()
+                        ? CodeBlock.of("$T.valueOf($N)", String.class, name(param))
+                        : CodeBlock.of("$N", name(param)));
+            } else {
+                parts.add(CodeBlock.of("$T.pathSegment($S, $N)", Uris.class, segment.getText(), name(param)));
+            }
+        }
+        return parts.isEmpty()
+                ? CodeBlock.of("$S", "")
+                : CodeBlock.join(parts, " + ");
+    }
+
+    /**
+     * Adds the query parameters of a GET, DELETE or HEAD parameter without annotations: the
+     * parameter itself if it has a single value, or else the public fields and getters of its class.
+     */
+    private void addEntityQueryParameters(Map<String, QueryParameter> queryParams,
+                                          VariableElement entity) {
+        TypeMirror entityType = entity.asType();
+        if (isSingleValue(entityType)) {
+            addQueryParameter(queryParams, name(entity),
+                    new QueryParameter(CodeBlock.of("$N", name(entity)), entityType, null));
+            return;
+        }
+        Element entityElement = ((DeclaredType) entityType).asElement();
+        Map<String, QueryParameter> properties = Maps.newHashMap();
+        for (VariableElement field : ElementFilter.fieldsIn(entityElement.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.PUBLIC)
+                    && !field.getModifiers().contains(Modifier.STATIC)) {
+                properties.put(name(field), new QueryParameter(CodeBlock.of("$N.$N", name(entity), name(field)),
+                        field.asType(),
+                        name(entity)));
+            }
+        }
+        // A getter takes the place of the field of the same name
+        for (ExecutableElement method : ElementFilter.methodsIn(entityElement.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.PUBLIC)
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && method.getParameters().isEmpty()
+                    && method.getReturnType().getKind() != TypeKind.VOID
+                    && name(method).startsWith(GETTER_PREFIX)
+                    && name(method).length() > GETTER_PREFIX.length()) {
+                properties.put(getterName(method), new QueryParameter(CodeBlock.of("$N.$N()", name(entity), name(method)),
+                        method.getReturnType(),
+                        name(entity)));
+            }
+        }
+        for (Map.Entry<String, QueryParameter> property : properties.entrySet()) {
+            addQueryParameter(queryParams, property.getKey(), property.getValue());
+        }
+    }
+
+    private static void addQueryParameter(Map<String, QueryParameter> queryParams,
+                                          String name,
+                                          QueryParameter parameter) {
+        checkState(queryParams.put(name, parameter) == null, "Duplicate query parameter %s", name);
+    }
+
+    private boolean isSingleValue(TypeMirror type) {
+        if (type.getKind().isPrimitive() || isString(type)) {
+            return true;
+        }
+        if (!(type instanceof DeclaredType)) {
+            return false;
+        }
+        Element element = ((DeclaredType) type).asElement();
+        return element.getKind() == ElementKind.ENUM
+                || element.toString().startsWith("java.lang.");
+    }
+
+    /**
+     * Adds the query parameters in order. Consecutive parameters from the same object are added
+     * only if that object is not null, and parameters that are objects only if they are not null.
+     *
+     * @return true if the method built by {@link #buildQueryParamMethod()} is used
+     */
+    private boolean addQueryParameters(MethodSpec.Builder methodBuilder,
+                                       String requestBuilder,
+                                       Map<String, QueryParameter> queryParams) {
+        boolean queryParamMethod = false;
+        String owner = null;
+        for (Map.Entry<String, QueryParameter> entry : queryParams.entrySet()) {
+            QueryParameter parameter = entry.getValue();
+            if (!Objects.equals(owner, parameter.owner)) {
+                if (owner != null) {
+                    methodBuilder.endControlFlow();
+                }
+                owner = parameter.owner;
+                if (owner != null) {
+                    methodBuilder.beginControlFlow("if ($N != null)", owner);
+                }
+            }
+            if (parameter.type.getKind().isPrimitive()) {
+                methodBuilder.addStatement("$N.queryParam($S, $T.valueOf($L))",
+                        requestBuilder, entry.getKey(), String.class, parameter.value);
+            } else {
+                queryParamMethod = true;
+                methodBuilder.addStatement("$N($N, $S, $L)",
+                        QUERY_PARAM_NAME, requestBuilder, entry.getKey(), parameter.value);
+            }
+        }
+        if (owner != null) {
+            methodBuilder.endControlFlow();
+        }
+        return queryParamMethod;
+    }
+
+    /**
+     * @param metered  If the method also records the completion of the request, with the size of the response
+     * @param streamed If the method reads the elements of a JSON array as they are iterated, rather than the
+     *                 whole value
+     * @return A method that reads the JSON string a promise is resolved with, using a generated codec
+     */
+    private MethodSpec buildDecodeMethod(boolean metered, boolean streamed) {
+        TypeVariableName t = TypeVariableName.get("T");
+        TypeName valueType = streamed
+                ? ParameterizedTypeName.get(ClassName.get(Iterator.class), t)
+                : t;
+        MethodSpec.Builder decode = MethodSpec.methodBuilder(streamed ? STREAM_NAME : DECODE_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addTypeVariable(t)
+                .returns(ParameterizedTypeName.get(ClassName.get(Promise.class), valueType, ClassName.get(Exception.class)))
+                .addParameter(ParameterizedTypeName.get(Promise.class, String.class, Exception.class), "json")
+                .addParameter(ParameterizedTypeName.get(ClassName.get(java.util.function.Function.class),
+                        ClassName.get(JsonReader.class),
+                        t), "reader");
+        if (metered) {
+            decode.addParameter(MetricsSink.EndpointRecorder.class, "recorder")
+                    .addParameter(long.class, "start");
+        }
+        decode.addStatement("$T deferred = $T.defer()",
+                ParameterizedTypeName.get(ClassName.get(Deferred.class), valueType, ClassName.get(Exception.class)),
+                Deferred.class)
+                .addCode("json.then((body) -> {\n$>")
+                .addStatement("$T value", valueType)
+                .beginControlFlow("try")
+                .addStatement(streamed
+                        ? "value = $T.elements(body, reader)"
+                        : "value = $T.fromJson(body, reader)", JsonReader.class)
+                .nextControlFlow("catch ($T e)", RuntimeException.class);
+        if (metered) {
+            decode.addStatement("recorder.completed($T.nanoTime() - start, body != null ? body.length() : -1, e)",
+                    System.class);
+        }
+        decode.addStatement("deferred.reject(e)")
+                .addStatement("return")
+                .endControlFlow();
+        if (metered) {
+            decode.addStatement("recorder.completed($T.nanoTime() - start, body != null ? body.length() : -1, null)",
+                    System.class);
+        }
+        decode.addStatement("deferred.resolve(value)");
+        if (metered) {
+            decode.addCode("$<}).capture((exception) -> {\n$>")
+                    .addStatement("recorder.completed($T.nanoTime() - start, -1, exception)", System.class)
+                    .addStatement("deferred.reject(exception)")
+                    .addCode("$<});\n");
+        } else {
+            decode.addCode("$<}).capture(deferred::reject);\n");
+        }
+        return decode.addStatement("return deferred.promise()")
+                .build();
+    }
+
+    /**
+     * @return A method that records the completion of the request of a promise in the recorder of its method
+     */
+    private MethodSpec buildMeterMethod() {
+        TypeVariableName t = TypeVariableName.get("T");
+        TypeVariableName e = TypeVariableName.get("E", Exception.class);
+        return MethodSpec.methodBuilder(METER_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addTypeVariable(t)
+                .addTypeVariable(e)
+                .returns(ParameterizedTypeName.get(ClassName.get(Promise.class), t, e))
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Promise.class), t, e), "promise")
+                .addParameter(MetricsSink.EndpointRecorder.class, "recorder")
+                .addParameter(long.class, "start")
+                .addStatement("$T deferred = $T.defer()",
+                        ParameterizedTypeName.get(ClassName.get(Deferred.class), t, e),
+                        Deferred.class)
+                .addCode("promise.then((response) -> {\n$>")
+                .addStatement("recorder.completed($T.nanoTime() - start, -1, null)", System.class)
+                .addStatement("deferred.resolve(response)")
+                .addCode("$<}).capture((exception) -> {\n$>")
+                .addStatement("recorder.completed($T.nanoTime() - start, -1, exception)", System.class)
+                .addStatement("deferred.reject(exception)")
+                .addCode("$<});\n")
+                .addStatement("return deferred.promise()")
+                .build();
+    }
+
+    private MethodSpec buildQueryParamMethod() {
+        return MethodSpec.methodBuilder(QUERY_PARAM_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(HttpRequest.Builder.class, "builder")
+                .addParameter(String.class, "name")
+                .addParameter(ParameterSpec.builder(Object.class, "value")
+                        .addAnnotation(Nullable.class)
+                        .build())
+                .beginControlFlow("if (value != null)")
+                .addStatement("builder.queryParam(name, value.toString())")
+                .endControlFlow()
+                .build();
     }
 
     private String name(Element element) {
@@ -217,11 +791,6 @@ public class ServiceProcessor
         return name.substring(0, 1).toLowerCase() + name.substring(1);
     }
 
-    private String stringExpression(String expr, TypeMirror type) {
-        return isString(type)
-                ? expr
-                : "String.valueOf(" + expr + ")";
-    }
 
     private HttpMethod httpMethod(ExecutableElement element) {
         for (Map.Entry<Class<? extends Annotation>, HttpMethod> entry
@@ -234,4 +803,20 @@ public class ServiceProcessor
                 Joiner.on(", ").join(Iterables
                         .transform(ANNOTATION_TO_HTTP_METHOD.keySet(), Object::toString)));
     }
+
+    /**
+     * The value of a query parameter, and the object it is read from, if any.
+     */
+    private static class QueryParameter {
+        private final CodeBlock value;
+        private final TypeMirror type;
+        @Nullable
+        private final String owner;
+
+        private QueryParameter(CodeBlock value, TypeMirror type, @Nullable String owner) {
+            this.value = value;
+            this.type = type;
+            this.owner = owner;
+        }
+    }
 }
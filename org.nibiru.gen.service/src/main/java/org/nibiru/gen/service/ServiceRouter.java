@@ -0,0 +1,427 @@
+package org.nibiru.gen.service;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import org.nibiru.async.core.api.promise.Promise;
+import org.nibiru.gen.api.service.JsonCodecs;
+import org.nibiru.gen.api.service.JsonReader;
+import org.nibiru.gen.api.service.JsonWriter;
+import org.nibiru.gen.api.service.ServerExchange;
+import org.nibiru.gen.api.service.Uris;
+import org.nibiru.mobile.core.api.http.HttpMethod;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Builds the {@code FooRouter} of a service, which calls an implementation of it for the requests
+ * of a server.
+ * <p>
+ * The paths of the methods are compiled into a trie of nested {@code switch} statements over the
+ * decoded path segments, with literal segments tried before variables, and a {@code switch} over the
+ * HTTP method at the end of each path. Path and query parameters are converted, and bound to the
+ * public fields and setters of query parameter objects, by generated code, so requests are routed
+ * without reflection or regular expressions.
+ */
+class ServiceRouter {
+    static final String ROUTER_SUFFIX = "Router";
+    private static final String SERVICE_NAME = "service";
+    private static final String EXCHANGE_NAME = "exchange";
+    private static final String SEGMENTS_NAME = "segments";
+    private static final String ROUTE_NAME = "route";
+    private static final String RESPOND_NAME = "respond";
+    private static final Map<TypeKind, Class<?>> PRIMITIVE_PARSERS = ImmutableMap.<TypeKind, Class<?>>builder()
+            .put(TypeKind.BOOLEAN, Boolean.class)
+            .put(TypeKind.BYTE, Byte.class)
+            .put(TypeKind.SHORT, Short.class)
+            .put(TypeKind.INT, Integer.class)
+            .put(TypeKind.LONG, Long.class)
+            .put(TypeKind.FLOAT, Float.class)
+            .put(TypeKind.DOUBLE, Double.class)
+            .build();
+    private static final Map<TypeKind, String> PRIMITIVE_PARSE_METHODS = ImmutableMap.<TypeKind, String>builder()
+            .put(TypeKind.BOOLEAN, "parseBoolean")
+            .put(TypeKind.BYTE, "parseByte")
+            .put(TypeKind.SHORT, "parseShort")
+            .put(TypeKind.INT, "parseInt")
+            .put(TypeKind.LONG, "parseLong")
+            .put(TypeKind.FLOAT, "parseFloat")
+            .put(TypeKind.DOUBLE, "parseDouble")
+            .build();
+
+    private final TypeElement type;
+    @Nullable
+    private final JsonCodecsBuilder codecs;
+    private final Node root;
+    private final NameAllocator methodNames;
+    private final List<MethodSpec> routeMethods;
+
+    /**
+     * @param codecs The codecs of a {@link JsonCodecs} service, which read
+     *               the bodies of the requests and write the responses
+     */
+    ServiceRouter(TypeElement type, @Nullable JsonCodecsBuilder codecs) {
+        this.type = checkNotNull(type);
+        this.codecs = codecs;
+        this.root = new Node();
+        this.methodNames = new NameAllocator();
+        methodNames.newName(ROUTE_NAME);
+        methodNames.newName(RESPOND_NAME);
+        this.routeMethods = Lists.newArrayList();
+    }
+
+    /**
+     * @param responseType The type of the value of the promise returned by the method
+     * @return The method of the router that calls the method of the service
+     */
+    MethodSpec addRoute(ExecutableElement element,
+                  PathTemplate template,
+                  HttpMethod httpMethod,
+                  DeclaredType responseType) {
+        Node node = root;
+        Map<String, Integer> variableIndexes = Maps.newHashMap();
+        List<PathTemplate.Segment> segments = template.getPathSegments();
+        for (int n = 0; n < segments.size(); n++) {
+            PathTemplate.Segment segment = segments.get(n);
+            if (segment.isVariable()) {
+                variableIndexes.put(segment.getText(), n);
+                if (node.variable == null) {
+                    node.variable = new Node();
+                }
+                node = node.variable;
+            } else {
+                node = node.literals.computeIfAbsent(segment.getText(), (s) -> new Node());
+            }
+        }
+        String methodName = methodNames.newName(element.getSimpleName().toString());
+        String other = node.routes.put(httpMethod, methodName);
+        checkState(other == null, "Methods %s and %s of %s have the same path %s and HTTP method %s",
+                other, element.getSimpleName(), type, template.getPath(), httpMethod);
+        MethodSpec routeMethod = buildRouteMethod(element, methodName, variableIndexes, httpMethod, responseType);
+        routeMethods.add(routeMethod);
+        return routeMethod;
+    }
+
+    TypeSpec.Builder build() {
+        ClassName typeName = ClassName.get(type);
+        MethodSpec.Builder route = MethodSpec.methodBuilder(ROUTE_NAME)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("@return false if no method of {@link $T} has the path of the request\n", typeName)
+                .returns(boolean.class)
+                .addParameter(ServerExchange.class, EXCHANGE_NAME)
+                .addStatement("$T[] $N", String.class, SEGMENTS_NAME)
+                .beginControlFlow("try")
+                .addStatement("$N = $T.pathSegments($N.getPath())", SEGMENTS_NAME, Uris.class, EXCHANGE_NAME)
+                .nextControlFlow("catch ($T e)", IllegalArgumentException.class)
+                .addStatement("$N.fail(400, e)", EXCHANGE_NAME)
+                .addStatement("return true")
+                .endControlFlow();
+        CodeBlock.Builder trie = CodeBlock.builder();
+        addNode(trie, root, 0);
+        route.addCode(trie.build())
+                .addStatement("return false");
+
+        return TypeSpec.classBuilder(typeName.simpleName() + ROUTER_SUFFIX)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(typeName, SERVICE_NAME, Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addAnnotation(Inject.class)
+                        .addParameter(typeName, SERVICE_NAME)
+                        .addStatement("this.$N = $T.checkNotNull($N)", SERVICE_NAME, Preconditions.class, SERVICE_NAME)
+                        .build())
+                .addMethod(route.build())
+                .addMethods(routeMethods)
+                .addMethod(buildRespondMethod());
+    }
+
+    /**
+     * Adds the code that routes the requests whose path starts with the segments of the node.
+     * It returns if a method of the node or of its children has the path, and else falls through,
+     * so a variable can still match a segment for which a literal child has no method.
+     */
+    private void addNode(CodeBlock.Builder code, Node node, int depth) {
+        if (!node.routes.isEmpty()) {
+            code.beginControlFlow("if ($N.length == $L)", SEGMENTS_NAME, depth)
+                    .beginControlFlow("switch ($N.getMethod())", EXCHANGE_NAME);
+            for (Map.Entry<HttpMethod, String> entry : node.routes.entrySet()) {
+                code.add("case $S:\n$>", entry.getKey().name())
+                        .addStatement("$N($N, $N)", entry.getValue(), EXCHANGE_NAME, SEGMENTS_NAME)
+                        .addStatement("return true")
+                        .add("$<");
+            }
+            code.add("default:\n$>")
+                    .addStatement("$N.fail(405, null)", EXCHANGE_NAME)
+                    .addStatement("return true")
+                    .add("$<")
+                    .endControlFlow()
+                    .endControlFlow();
+        }
+        if (node.literals.isEmpty() && node.variable == null) {
+            return;
+        }
+        code.beginControlFlow("if ($N.length > $L)", SEGMENTS_NAME, depth);
+        if (node.literals.size() == 1) {
+            Map.Entry<String, Node> literal = node.literals.entrySet().iterator().next();
+            code.beginControlFlow("if ($S.equals($N[$L]))", literal.getKey(), SEGMENTS_NAME, depth);
+            addNode(code, literal.getValue(), depth + 1);
+            code.endControlFlow();
+        } else if (!node.literals.isEmpty()) {
+            code.beginControlFlow("switch ($N[$L])", SEGMENTS_NAME, depth);
+            for (Map.Entry<String, Node> literal : node.literals.entrySet()) {
+                code.add("case $S:\n$>", literal.getKey());
+                addNode(code, literal.getValue(), depth + 1);
+                code.addStatement("break")
+                        .add("$<");
+            }
+            code.endControlFlow();
+        }
+        if (node.variable != null) {
+            addNode(code, node.variable, depth + 1);
+        }
+        code.endControlFlow();
+    }
+
+    /**
+     * @return A method that binds the parameters of a service method, calls it and responds with its promise.
+     * Malformed parameters are answered with 400, and exceptions thrown by the service with 500.
+     */
+    private MethodSpec buildRouteMethod(ExecutableElement element,
+                                        String methodName,
+                                        Map<String, Integer> variableIndexes,
+                                        HttpMethod httpMethod,
+                                        DeclaredType responseType) {
+        NameAllocator names = new NameAllocator();
+        names.newName(EXCHANGE_NAME);
+        names.newName(SEGMENTS_NAME);
+        String value = names.newName("value");
+        List<String> arguments = Lists.newArrayList();
+        for (VariableElement param : element.getParameters()) {
+            arguments.add(names.newName(param.getSimpleName().toString(), param));
+        }
+        String exception = names.newName("e");
+
+        MethodSpec.Builder method = MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(ServerExchange.class, EXCHANGE_NAME)
+                .addParameter(String[].class, SEGMENTS_NAME);
+        CodeBlock.Builder binding = CodeBlock.builder();
+        boolean valueUsed = false;
+        for (VariableElement param : element.getParameters()) {
+            String argument = names.get(param);
+            TypeMirror paramType = param.asType();
+            method.addStatement("$T $N", TypeName.get(paramType), argument);
+            PathParam pathParam = param.getAnnotation(PathParam.class);
+            QueryParam queryParam = param.getAnnotation(QueryParam.class);
+            if (pathParam != null) {
+                binding.addStatement("$N = $L", argument, parse(paramType,
+                        CodeBlock.of("$N[$L]", SEGMENTS_NAME, variableIndexes.get(pathParam.value()))));
+            } else if (queryParam != null) {
+                addQueryParameter(binding, argument, paramType, queryParam.value(), value);
+                valueUsed = true;
+            } else if (httpMethod == HttpMethod.POST || httpMethod == HttpMethod.PUT) {
+                if (codecs != null) {
+                    binding.addStatement("$N = $N.getEntity($T.class)", value, EXCHANGE_NAME, String.class)
+                            .addStatement("$N = $N != null ? $T.fromJson($N, $L) : null",
+                                    argument, value, JsonReader.class, value, codecs.reader(paramType));
+                    valueUsed = true;
+                } else {
+                    checkState(!(paramType instanceof DeclaredType)
+                                    || ((DeclaredType) paramType).getTypeArguments().isEmpty(),
+                            "Body of %s must not be generic, unless %s is annotated with %s",
+                            element, type, JsonCodecs.class);
+                    binding.addStatement("$N = $N.getEntity($T.class)",
+                            argument, EXCHANGE_NAME, TypeName.get(paramType).box());
+                }
+            } else if (isSingleValue(paramType)) {
+                addQueryParameter(binding, argument, paramType, param.getSimpleName().toString(), value);
+                valueUsed = true;
+            } else {
+                addQueryParameterObject(binding, argument, paramType, value);
+                valueUsed = true;
+            }
+        }
+        if (valueUsed) {
+            method.addStatement("$T $N", String.class, value);
+        }
+        CodeBlock bindingCode = binding.build();
+        if (!bindingCode.isEmpty()) {
+            method.beginControlFlow("try")
+                    .addCode(bindingCode)
+                    .nextControlFlow("catch ($T $N)", IllegalArgumentException.class, exception)
+                    .addStatement("$N.fail(400, $N)", EXCHANGE_NAME, exception)
+                    .addStatement("return")
+                    .endControlFlow();
+        }
+
+        CodeBlock call = CodeBlock.of("$N.$N($L)", SERVICE_NAME, element.getSimpleName(), String.join(", ", arguments));
+        return method.beginControlFlow("try")
+                .addStatement(codecs != null
+                                ? CodeBlock.of("$N($N, $L, $L)", RESPOND_NAME, EXCHANGE_NAME, call, codecs.writer(responseType))
+                                : CodeBlock.of("$N($N, $L)", RESPOND_NAME, EXCHANGE_NAME, call))
+                .nextControlFlow("catch ($T $N)", RuntimeException.class, exception)
+                .addStatement("$N.fail(500, $N)", EXCHANGE_NAME, exception)
+                .endControlFlow()
+                .build();
+    }
+
+    private void addQueryParameter(CodeBlock.Builder binding,
+                                   String argument,
+                                   TypeMirror type,
+                                   String name,
+                                   String value) {
+        binding.addStatement("$N = $N.getQueryParameter($S)", value, EXCHANGE_NAME, name)
+                .addStatement("$N = $N != null ? $L : $L", argument, value, parse(type, CodeBlock.of("$N", value)),
+                        defaultValue(type));
+    }
+
+    /**
+     * Adds the statements that create the object of a GET, DELETE or HEAD parameter without annotations,
+     * and set its public fields and setters from the query parameters of the same names.
+     * A setter takes the place of the field of the same name, as a getter does on the client.
+     */
+    private void addQueryParameterObject(CodeBlock.Builder binding,
+                                         String argument,
+                                         TypeMirror type,
+                                         String value) {
+        Element element = ((DeclaredType) type).asElement();
+        checkState(BeanProperty.isInstantiable(element),
+                "Query parameters of %s can only be bound to a class with a public constructor without parameters",
+                type);
+        binding.addStatement("$N = new $T()", argument, TypeName.get(type));
+        for (Map.Entry<String, BeanProperty> property : BeanProperty.settable(element).entrySet()) {
+            binding.addStatement("$N = $N.getQueryParameter($S)", value, EXCHANGE_NAME, property.getKey())
+                    .beginControlFlow("if ($N != null)", value)
+                    .addStatement(property.getValue().set(argument,
+                            parse(property.getValue().getType(), CodeBlock.of("$N", value))))
+                    .endControlFlow();
+        }
+    }
+
+    /**
+     * @return The conversion of a non-null string to the type, which throws {@link IllegalArgumentException}
+     * if the string is malformed
+     */
+    private CodeBlock parse(TypeMirror type, CodeBlock text) {
+        if (type.getKind().isPrimitive()) {
+            checkState(PRIMITIVE_PARSERS.containsKey(type.getKind()), "Parameters of type %s can not be routed", type);
+            return CodeBlock.of("$T.$N($L)", PRIMITIVE_PARSERS.get(type.getKind()),
+                    PRIMITIVE_PARSE_METHODS.get(type.getKind()), text);
+        }
+        if (type.toString().equals(String.class.getName())) {
+            return text;
+        }
+        checkState(type instanceof DeclaredType, "Parameters of type %s can not be routed", type);
+        Element element = ((DeclaredType) type).asElement();
+        checkState(element.getKind() == ElementKind.ENUM
+                        || PRIMITIVE_PARSERS.values()
+                        .stream()
+                        .anyMatch((c) -> c.getName().equals(type.toString())),
+                "Parameters of type %s can not be routed", type);
+        return CodeBlock.of("$T.valueOf($L)", TypeName.get(type), text);
+    }
+
+    private static CodeBlock defaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return CodeBlock.of("false");
+            case LONG:
+                return CodeBlock.of("0L");
+            case FLOAT:
+                return CodeBlock.of("0F");
+            case DOUBLE:
+                return CodeBlock.of("0D");
+            case BYTE:
+            case SHORT:
+                return CodeBlock.of("($T) 0", TypeName.get(type));
+            case INT:
+                return CodeBlock.of("0");
+            default:
+                return CodeBlock.of("null");
+        }
+    }
+
+    private static boolean isSingleValue(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return true;
+        }
+        if (!(type instanceof DeclaredType)) {
+            return false;
+        }
+        Element element = ((DeclaredType) type).asElement();
+        return element.getKind() == ElementKind.ENUM
+                || element.toString().startsWith("java.lang.");
+    }
+
+    /**
+     * @return A method that responds with the value of a promise, or fails with 500 if it is rejected
+     */
+    private MethodSpec buildRespondMethod() {
+        TypeVariableName t = TypeVariableName.get("T");
+        TypeVariableName e = TypeVariableName.get("E", Exception.class);
+        MethodSpec.Builder respond = MethodSpec.methodBuilder(RESPOND_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addTypeVariable(t)
+                .addTypeVariable(e)
+                .addParameter(ServerExchange.class, EXCHANGE_NAME)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Promise.class), t, e), "promise");
+        if (codecs == null) {
+            return respond.addStatement("promise.then((response) -> $N.respond(200, response))", EXCHANGE_NAME)
+                    .addStatement("promise.capture((exception) -> $N.fail(500, exception))", EXCHANGE_NAME)
+                    .build();
+        }
+        return respond.addParameter(ParameterizedTypeName.get(ClassName.get(BiConsumer.class),
+                ClassName.get(JsonWriter.class),
+                t), "writer")
+                .addCode("promise.then((response) -> {\n$>")
+                .addStatement("$T json", String.class)
+                .beginControlFlow("try")
+                .addStatement("json = $T.toJson(response, writer)", JsonWriter.class)
+                .nextControlFlow("catch ($T e)", RuntimeException.class)
+                .addStatement("$N.fail(500, e)", EXCHANGE_NAME)
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("$N.respond(200, json)", EXCHANGE_NAME)
+                .addCode("$<});\n")
+                .addStatement("promise.capture((exception) -> $N.fail(500, exception))", EXCHANGE_NAME)
+                .build();
+    }
+
+    /**
+     * A segment of the trie: the methods whose path ends here, by HTTP method, and the segments that follow.
+     */
+    private static class Node {
+        private final Map<String, Node> literals = Maps.newTreeMap();
+        private final Map<HttpMethod, String> routes = new EnumMap<>(HttpMethod.class);
+        @Nullable
+        private Node variable;
+    }
+}